@@ -0,0 +1,51 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON result files and reports scores that moved by more than a threshold.
+
+Usage: compare.py baseline.json current.json [threshold percent, default 10]
+Exits with status 1 if any benchmark regressed.
+"""
+import json
+import sys
+
+
+def load(path):
+    results = {}
+    with open(path) as f:
+        for run in json.load(f):
+            params = ",".join("%s=%s" % kv for kv in sorted(run.get("params", {}).items()))
+            key = (run["benchmark"], run["mode"], params)
+            metrics = {"score": run["primaryMetric"]}
+            metrics.update(run.get("secondaryMetrics", {}))
+            results[key] = metrics
+    return results
+
+
+def main(args):
+    if len(args) < 2:
+        sys.exit(__doc__)
+    base, curr = load(args[0]), load(args[1])
+    threshold = float(args[2]) if len(args) > 2 else 10.0
+    regressed = False
+    for key in sorted(set(base) & set(curr)):
+        benchmark, mode, params = key
+        for metric in ("score", "gc.alloc.rate.norm"):
+            if metric not in base[key] or metric not in curr[key]:
+                continue
+            old = base[key][metric]["score"]
+            new = curr[key][metric]["score"]
+            if old == 0:
+                continue
+            change = 100.0 * (new - old) / old
+            # Throughput is better when higher, every other mode and allocation when lower
+            worse = change < 0 if metric == "score" and mode == "thrpt" else change > 0
+            if abs(change) > threshold:
+                regressed |= worse
+                print("%-8s %-45s %-6s %-20s %-18s %12.3f -> %12.3f %+7.1f%%" % (
+                    "WORSE" if worse else "better", benchmark, mode, params, metric, old, new, change))
+    for key in sorted(set(base) ^ set(curr)):
+        print("only in %s: %s %s %s" % (args[0] if key in base else args[1], *key))
+    sys.exit(1 if regressed else 0)
+
+
+if __name__ == "__main__":
+    main(sys.argv[1:])
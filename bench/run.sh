@@ -0,0 +1,10 @@
+#!/bin/sh
+# Builds the benchmark jar and runs the benchmarks with the GC profiler, writing JMH JSON results.
+# Usage: ./run.sh [results.json] [JMH options, e.g. SolverBench -p store=large]
+set -e
+cd "$(dirname "$0")"
+mvn -B -q package
+out=${1:-results/baseline.json}
+[ $# -gt 0 ] && shift
+mkdir -p "$(dirname "$out")"
+java -jar target/benchmarks.jar -prof gc -rf json -rff "$out" "$@"
@@ -0,0 +1,107 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import problem.HistoryMode;
+import problem.LogLevel;
+import problem.ProblemSpec;
+import problem.Simulator;
+import problem.SplittableRandomSource;
+import problem.Store;
+
+/**
+ * Simulating a week and sampling a single index with {@link Simulator}, without output or history.
+ * The weeks are ordered by a fixed order-up-to policy like {@code problem.SimulatorBenchmark}, so
+ * the store keeps stock and the steps go through the sales, return and penalty paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBench {
+
+    @Param({ "tiny", "small", "medium", "large", "mega" })
+    public String store;
+
+    private ProblemSpec spec;
+    private Simulator simulator;
+    private Store shop;
+    private int[] inventory;
+    private int[] amounts;
+    private List<Integer> order;
+    private List<Double> row;
+
+    @Setup
+    public void setup() throws IOException {
+        File file = File.createTempFile("bench-" + store, ".txt");
+        file.deleteOnExit();
+        Workloads.writeTextSpec(store, file);
+        spec = new ProblemSpec(file.getPath());
+        simulator = new Simulator(spec, new SplittableRandomSource(1), LogLevel.OFF);
+        simulator.setHistoryMode(HistoryMode.OFF);
+        simulator.reset();
+        shop = spec.getStore();
+        inventory = new int[shop.getMaxTypes()];
+        amounts = new int[shop.getMaxTypes()];
+        order = new ArrayList<Integer>();
+        for (int i = 0; i < shop.getMaxTypes(); i++) {
+            order.add(0);
+        }
+        row = spec.getProbabilities().get(0).getRow(spec.getStore().getCapacity() / 2);
+    }
+
+    @Benchmark
+    public double simulateStep() {
+        if (simulator.getCurrentWeek() > spec.getNumWeeks()) {
+            simulator.reset();
+        }
+        List<Integer> stock = simulator.getStockInventory();
+        for (int i = 0; i < inventory.length; i++) {
+            inventory[i] = stock.get(i);
+        }
+        orderUpTo(shop, inventory, amounts);
+        for (int i = 0; i < amounts.length; i++) {
+            order.set(i, amounts[i]);
+        }
+        simulator.simulateStep(order);
+        return simulator.getTotalProfit();
+    }
+
+    @Benchmark
+    public int sampleIndex() {
+        return simulator.sampleIndex(row);
+    }
+
+    /**
+     * Orders every item type up to an equal share of the capacity, within the max order size.
+     * @param store The store
+     * @param inventory Current stock of every item type
+     * @param order Filled with the order of every item type
+     */
+    private static void orderUpTo(Store store, int[] inventory, int[] order) {
+        int target = store.getCapacity() / store.getMaxTypes();
+        int budget = store.getMaxPurchase();
+        for (int i = 0; i < inventory.length; i++) {
+            order[i] = Math.max(0, Math.min(budget, target - inventory[i]));
+            budget -= order[i];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import problem.Store;
+import solver.MDP;
+import solver.UpdateSchedule;
+
+/**
+ * Solving the process of a single item type with the map-based and the dense value iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBench {
+
+    @Param({ "tiny", "small", "medium", "large", "mega", "synthetic-30", "synthetic-50" })
+    public String store;
+
+    private MDP mdp;
+
+    @Setup
+    public void setup() {
+        Store s = Workloads.store(store);
+        mdp = new MDP(s.getCapacity(), Workloads.storagePart(s), s.getMaxPurchase(), s.getMaxReturns(),
+                5.0, 10.0, 0.95, Workloads.demand(s.getCapacity(), 0));
+        mdp.setSchedule(UpdateSchedule.JACOBI);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> valueIteration() {
+        return mdp.valueIteration(1);
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> denseValueIteration() {
+        return mdp.denseValueIteration(1);
+    }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import problem.BinarySpec;
+import problem.ProblemSpec;
+
+/**
+ * Loading a problem spec from its text and binary encodings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpecLoadBench {
+
+    @Param({ "tiny", "small", "medium", "large", "mega" })
+    public String store;
+
+    @Param({ "text", "binary" })
+    public String format;
+
+    private String path;
+
+    @Setup
+    public void setup() throws IOException {
+        File text = File.createTempFile("bench-" + store, ".txt");
+        text.deleteOnExit();
+        Workloads.writeTextSpec(store, text);
+        path = text.getPath();
+        if (format.equals("binary")) {
+            File binary = File.createTempFile("bench-" + store, ".bin");
+            binary.deleteOnExit();
+            BinarySpec.write(new ProblemSpec(path), binary.getPath());
+            path = binary.getPath();
+        }
+    }
+
+    @Benchmark
+    public ProblemSpec loadInputFile() throws IOException {
+        return new ProblemSpec(path);
+    }
+}
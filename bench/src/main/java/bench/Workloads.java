@@ -0,0 +1,104 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import problem.Matrix;
+import problem.Store;
+
+/**
+ * Stores and demand models shared by the benchmarks. Workload names are the {@link Store}
+ * presets, or synthetic-N for a single item type store of capacity N.
+ */
+final class Workloads {
+    /** Prefix of synthetic workload names. */
+    static final String SYNTHETIC = "synthetic-";
+
+    private Workloads() {
+    }
+
+    /**
+     * @param name A preset name or synthetic-N
+     * @return The store of the workload
+     */
+    static Store store(final String name) {
+        if (name.startsWith(SYNTHETIC)) {
+            int capacity = Integer.parseInt(name.substring(SYNTHETIC.length()));
+            return new Store(name, capacity, Math.max(1, capacity / 4), Math.max(1, capacity / 8), 1);
+        }
+        return new Store(name);
+    }
+
+    /**
+     * @param store The store
+     * @return Storage part of each item type, as MySolver splits the capacity
+     */
+    static int storagePart(final Store store) {
+        return (store.getCapacity() + store.getMaxTypes() - 1) / store.getMaxTypes();
+    }
+
+    /**
+     * Demand with a Poisson shape whose mean grows with the stock level, truncated to the capacity.
+     * @param capacity Capacity of the store
+     * @param type Item type, shifting the mean so that item types differ
+     * @return Matrix of wants probabilities by stock level, rows summing to 1
+     */
+    static Matrix demand(final int capacity, final int type) {
+        int size = capacity + 1;
+        double[] data = new double[size * size];
+        for (int stock = 0; stock < size; stock++) {
+            double mean = 0.5 + (type + 1) * 0.1 * capacity + 0.2 * stock;
+            double p = Math.exp(-mean);
+            double sum = 0;
+            for (int wants = 0; wants < size; wants++) {
+                data[stock * size + wants] = p;
+                sum += p;
+                p *= mean / (wants + 1);
+            }
+            for (int wants = 0; wants < size; wants++) {
+                data[stock * size + wants] /= sum;
+            }
+        }
+        return new Matrix(size, size, data);
+    }
+
+    /**
+     * Writes a text problem spec of a preset store with {@link #demand} matrices.
+     * @param presetName Name of a Store preset
+     * @param file The file to write
+     * @throws IOException
+     */
+    static void writeTextSpec(final String presetName, final File file) throws IOException {
+        Store store = new Store(presetName);
+        String ls = System.getProperty("line.separator");
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write(presetName + ls);
+            out.write("0.95" + ls);
+            out.write("50" + ls);
+            out.write("5.0" + ls);
+            for (int i = 0; i < store.getMaxTypes(); i++) {
+                out.write((10 + 5 * i) + ".0 ");
+            }
+            out.write(ls);
+            for (int i = 0; i < store.getMaxTypes(); i++) {
+                out.write((i == 0 ? 1 : 0) + " ");
+            }
+            out.write(ls);
+            for (int k = 0; k < store.getMaxTypes(); k++) {
+                Matrix m = demand(store.getCapacity(), k);
+                for (int i = 0; i < m.getNumRows(); i++) {
+                    for (int j = 0; j < m.getNumCols(); j++) {
+                        out.write(m.get(i, j) + " ");
+                    }
+                    out.write(ls);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package problem;
+
+/**
+ * Ordering policy evaluated by {@link BatchSimulator} for many episodes at once.
+ */
+public interface BatchPolicy {
+
+	/**
+	 * Computes the stock orders of every episode for the coming week.
+	 * @param inventory Stock of item type i in episode e at index e * numTypes + i
+	 * @param numWeeksLeft The number of weeks left after this one
+	 * @param orders Filled with the order of item type i in episode e at index e * numTypes + i,
+	 *        negative for returns
+	 */
+	public void generateStockOrders(int[] inventory, int numWeeksLeft, int[] orders);
+}
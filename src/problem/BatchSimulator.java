@@ -0,0 +1,218 @@
+package problem;
+
+import java.util.List;
+
+/**
+ * Simulator advancing many episodes in lockstep. The inventories, user wants and orders of all
+ * episodes are kept in flat arrays with item type i of episode e at index e * numTypes + i, user
+ * wants of all episodes are sampled in one pass over the cumulative distributions of the
+ * {@link Matrix} rows, and the policy computes the orders of all episodes in one call.
+ * Every episode draws from its own random stream and follows the same rules as
+ * {@link Simulator#simulateStep(List)}, so episode e has the same profit as a Simulator given
+ * the same stream and orders. It prints and records nothing.
+ */
+public class BatchSimulator {
+	private RandomSource[] streams;
+
+	private int currentWeek;
+	private ProblemSpec problemSpec;
+	private Store store;
+	private Matrix[] probabilities;
+	private double[] prices;
+	private int numTypes;
+	private int numEpisodes;
+	private double discountFactor;
+	private double penaltyFee;
+	private int[] stockInventory;
+	private int[] wants;
+	private int[] order;
+	private double[] weekProfit;
+	private double[] totalProfit;
+
+	/**
+	 * Constructor
+	 * @param spec A ProblemSpec
+	 * @param rngs Random stream of every episode; the number of streams is the number of episodes
+	 */
+	public BatchSimulator(ProblemSpec spec, RandomSource[] rngs) {
+		problemSpec = spec;
+		store = spec.getStore();
+		streams = rngs;
+		numTypes = store.getMaxTypes();
+		numEpisodes = rngs.length;
+		probabilities = spec.getProbabilities().toArray(new Matrix[numTypes]);
+		prices = new double[numTypes];
+		List<Double> p = spec.getPrices();
+		for (int i = 0; i < numTypes; i++) {
+			prices[i] = p.get(i);
+		}
+		discountFactor = spec.getDiscountFactor();
+		penaltyFee = spec.getPenaltyFee();
+		stockInventory = new int[numEpisodes * numTypes];
+		wants = new int[numEpisodes * numTypes];
+		order = new int[numEpisodes * numTypes];
+		weekProfit = new double[numEpisodes];
+		totalProfit = new double[numEpisodes];
+		reset();
+	}
+
+	public void reset() {
+		currentWeek = 1;
+		List<Integer> initial = problemSpec.getInitialStock();
+		for (int e = 0; e < numEpisodes; e++) {
+			for (int i = 0; i < numTypes; i++) {
+				stockInventory[e * numTypes + i] = initial.get(i);
+			}
+			totalProfit[e] = 0;
+		}
+	}
+
+	/**
+	 * Replaces the random streams of the episodes
+	 * @param rngs Random stream of every episode, as many as there are episodes
+	 */
+	public void setRandom(RandomSource[] rngs) {
+		if (rngs.length != numEpisodes) {
+			throw new IllegalArgumentException("Expected one random stream per episode");
+		}
+		streams = rngs;
+	}
+
+	/**
+	 * Resets the episodes and simulates all weeks of the problem spec.
+	 * @param policy The policy placing the orders
+	 */
+	public void run(BatchPolicy policy) {
+		reset();
+		for (int i = 0; i < problemSpec.getNumWeeks(); i++) {
+			simulateStep(policy, problemSpec.getNumWeeks() - (i+1));
+		}
+	}
+
+	/**
+	 * Simulate a week of every episode. A runtime exception is thrown if an order
+	 * is invalid. Otherwise the customer consumption is sampled and the current
+	 * week is advanced.
+	 * @param policy The policy placing the orders
+	 * @param numWeeksLeft The number of weeks left after this one
+	 */
+	public void simulateStep(BatchPolicy policy, int numWeeksLeft) {
+		policy.generateStockOrders(stockInventory, numWeeksLeft, order);
+
+		// ##### Simulate customer consumption
+		for (int e = 0; e < numEpisodes; e++) {
+			RandomSource random = streams[e];
+			int base = e * numTypes;
+			for (int j = 0; j < numTypes; j++) {
+				wants[base + j] = probabilities[j].sampleCdf(stockInventory[base + j], random.nextDouble());
+			}
+		}
+		for (int e = 0; e < numEpisodes; e++) {
+			int base = e * numTypes;
+			double profit = 0.0;
+			for (int j = 0; j < numTypes; j++) {
+				// compute profit from sales
+				int sold = Math.min(wants[base + j], stockInventory[base + j]);
+				profit += (sold * prices[j] * 0.75);
+
+				// compute missed opportunity penalty
+				int missed = wants[base + j] - sold;
+				profit -= (missed * prices[j] * 0.25);
+
+				// update stock levels
+				stockInventory[base + j] -= sold;
+			}
+			weekProfit[e] = profit;
+		}
+
+		// ##### Cut items from order if necessary, then apply order and returns to inventory
+		for (int e = 0; e < numEpisodes; e++) {
+			applyOrder(e);
+		}
+
+		// update total profit
+		double discount = Math.pow(discountFactor, currentWeek - 1);
+		for (int e = 0; e < numEpisodes; e++) {
+			totalProfit[e] += (discount * weekProfit[e]);
+		}
+		currentWeek++;
+	}
+
+	/**
+	 * Cuts and applies the order of one episode, charging penalty and return fees to its week profit.
+	 * @param e The episode
+	 */
+	private void applyOrder(int e) {
+		int base = e * numTypes;
+		int sum = 0;
+		for (int i = 0; i < numTypes; i++) {
+			sum += order[base + i];
+		}
+		int item = 0;
+		while (sum > store.getCapacity()) {
+			if (order[base + item] == 0) {
+				// go to next item type
+				item++;
+				if (item >= numTypes) {
+					throw new IllegalArgumentException("Capacity exceeded and cannot cut order any further");
+				}
+			} else {
+				// cut the order of item type i
+				order[base + item]--;
+				sum--;
+
+				// subtract penalty fee
+				weekProfit[e] -= penaltyFee;
+			}
+		}
+
+		int totalOrdered = 0;
+		int totalReturned = 0;
+		for (int i = 0; i < numTypes; i++) {
+			int o = order[base + i];
+			if (o > 0) {
+				totalOrdered += o;
+				stockInventory[base + i] += o;
+			} else {
+				totalReturned += o;
+				if (o > stockInventory[base + i]) {
+					throw new IllegalArgumentException("Return amount exceeds current stock.");
+				}
+				stockInventory[base + i] -= o;
+
+				// subtract return fees
+				weekProfit[e] -= (prices[i] * 0.5 * Math.abs(o));
+			}
+		}
+		if (totalOrdered > store.getMaxPurchase()) {
+			throw new IllegalArgumentException("Number of items ordered too large.");
+		}
+		if (totalReturned > store.getMaxReturns()) {
+			throw new IllegalArgumentException("Number of items returned too large.");
+		}
+	}
+
+	/**
+	 * @return Current stock of item type i in episode e at index e * numTypes + i;
+	 *         the array is used by the simulator and must not be modified
+	 */
+	public int[] getStockInventory() {
+		return stockInventory;
+	}
+
+	/**
+	 * @param episode The episode
+	 * @return the total profit of the episode so far
+	 */
+	public double getTotalProfit(int episode) {
+		return totalProfit[episode];
+	}
+
+	public int getNumEpisodes() {
+		return numEpisodes;
+	}
+
+	public int getCurrentWeek() {
+		return currentWeek;
+	}
+}
@@ -0,0 +1,197 @@
+package problem;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes simulation output in a compact binary format: the magic bytes "MDPO", a version
+ * byte, then the number of item types, the number of weeks, the initial stock and the
+ * requests, orders and returns of every week, all as zig-zag encoded variable length integers
+ * of 7 bits per byte. Weeks are appended until the file ends. Use {@link #convertToText} to
+ * turn the file into the text format.
+ */
+public class BinaryOutputWriter implements OutputWriter {
+	/** First bytes of every binary output file. */
+	public static final byte[] MAGIC = { 'M', 'D', 'P', 'O' };
+	/** Version of the format written. */
+	public static final int VERSION = 1;
+	/** Size of the output buffer in bytes. */
+	public static final int BUFFER_SIZE = 1 << 16;
+	/** Longest encoding of an int. */
+	private static final int MAX_VARINT_LENGTH = 5;
+
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private int flushInterval;
+	private int weeksSinceFlush;
+
+	/**
+	 * Constructor
+	 * @param filename The file path to save to
+	 * @param flushInterval Number of weeks after which buffered output is written out,
+	 *        or 0 to write only when the buffer is full
+	 * @throws IOException
+	 */
+	public BinaryOutputWriter(String filename, int flushInterval) throws IOException {
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public void begin(int numWeeks, int[] initialStock) throws IOException {
+		buffer.put(MAGIC);
+		buffer.put((byte) VERSION);
+		writeVarint(initialStock.length);
+		writeVarint(numWeeks);
+		writeAll(initialStock);
+	}
+
+	@Override
+	public void writeWeek(int[] request, int[] order, int[] returned) throws IOException {
+		writeAll(request);
+		writeAll(order);
+		writeAll(returned);
+		weeksSinceFlush++;
+		if (flushInterval > 0 && weeksSinceFlush >= flushInterval) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		weeksSinceFlush = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param items Numbers to write
+	 * @throws IOException
+	 */
+	private void writeAll(int[] items) throws IOException {
+		for (int item : items) {
+			writeVarint(item);
+		}
+	}
+
+	/**
+	 * @param value Number to write, zig-zag encoded so small negative numbers stay short
+	 * @throws IOException
+	 */
+	private void writeVarint(int value) throws IOException {
+		if (buffer.remaining() < MAX_VARINT_LENGTH) {
+			flush();
+		}
+		int v = (value << 1) ^ (value >> 31);
+		while ((v & ~0x7f) != 0) {
+			buffer.put((byte) ((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		buffer.put((byte) v);
+	}
+
+	/**
+	 * Converts a binary output file to the text format.
+	 * @param binaryFile The binary file to read
+	 * @param textFile The text file to write
+	 * @throws IOException if the binary file is not valid
+	 */
+	public static void convertToText(String binaryFile, String textFile) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(binaryFile)), BUFFER_SIZE);
+		try {
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (in.read() != MAGIC[i]) {
+					throw new IOException("Not a binary output file.");
+				}
+			}
+			int version = in.read();
+			if (version != VERSION) {
+				throw new IOException(String.format("Unsupported binary output version %d", version));
+			}
+			int numTypes = readVarint(in);
+			int numWeeks = readVarint(in);
+			if (numTypes <= 0 || numWeeks < 0) {
+				throw new IOException(String.format("Invalid header: %d item types, %d weeks",
+						numTypes, numWeeks));
+			}
+			int[] request = new int[numTypes];
+			int[] order = new int[numTypes];
+			int[] returned = new int[numTypes];
+			readAll(in, request, false);
+			TextOutputWriter out = new TextOutputWriter(textFile, 0);
+			try {
+				out.begin(numWeeks, request);
+				while (readAll(in, request, true)) {
+					readAll(in, order, false);
+					readAll(in, returned, false);
+					out.writeWeek(request, order, returned);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @param in The stream to read from
+	 * @param dest Filled with the numbers read
+	 * @param atBoundary Whether the file may end before the first number
+	 * @return false if the file ended before the first number
+	 * @throws IOException if the file ends in the middle of the numbers
+	 */
+	private static boolean readAll(InputStream in, int[] dest, boolean atBoundary) throws IOException {
+		for (int i = 0; i < dest.length; i++) {
+			if (i == 0 && atBoundary) {
+				in.mark(1);
+				if (in.read() < 0) {
+					return false;
+				}
+				in.reset();
+			}
+			dest[i] = readVarint(in);
+		}
+		return true;
+	}
+
+	/**
+	 * @param in The stream to read from
+	 * @return The decoded number
+	 * @throws IOException if the file ends in the middle of the number
+	 */
+	private static int readVarint(InputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Binary output file ended in the middle of a week.");
+			}
+			v |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+		throw new IOException("Malformed number in binary output file.");
+	}
+}
@@ -0,0 +1,223 @@
+package problem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary encoding of a {@link ProblemSpec}. All values are little-endian:
+ * <pre>
+ *  0  magic "MDPS"                      4 bytes
+ *  4  version                           int
+ *  8  capacity, max order, max returns,
+ *     max types, number of weeks,
+ *     length of the store name          6 ints
+ * 32  discount factor, penalty fee      2 doubles
+ * 48  store name in UTF-8, zero padded to a multiple of 8 bytes
+ *     prices                            max types doubles
+ *     initial stock                     max types ints, zero padded to a multiple of 8 bytes
+ *     demand matrices                   max types * (capacity + 1)^2 doubles, row-major
+ *     CRC32 of all preceding bytes      long
+ * </pre>
+ * Every double is 8-byte aligned, so the demand matrices of a memory-mapped file are used
+ * by {@link Matrix} in place without copying.
+ */
+public class BinarySpec {
+	/** First bytes of every binary spec file. */
+	public static final byte[] MAGIC = { 'M', 'D', 'P', 'S' };
+	/** Version of the format written and read. */
+	public static final int VERSION = 1;
+	/** Size of the fixed part of the header in bytes. */
+	private static final int HEADER_SIZE = 48;
+
+	private BinarySpec() {
+	}
+
+	/**
+	 * @param filename The file to check
+	 * @return Whether the file starts with the magic bytes of a binary spec
+	 * @throws IOException
+	 */
+	public static boolean isBinary(String filename) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+			while (head.hasRemaining() && channel.read(head) >= 0) {
+				// keep reading until the magic is complete or the file ends
+			}
+			return !head.hasRemaining() && ByteBuffer.wrap(MAGIC).equals(head.flip());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a loaded problem spec in the binary format
+	 * @param spec The problem spec
+	 * @param filename The file path to save to
+	 * @throws IOException
+	 */
+	public static void write(ProblemSpec spec, String filename) throws IOException {
+		Store store = spec.getStore();
+		int types = store.getMaxTypes();
+		int size = store.getCapacity() + 1;
+		byte[] name = store.getName().getBytes(StandardCharsets.UTF_8);
+		long length = length(name.length, types, size);
+		if (length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Problem spec too large for the binary format");
+		}
+		ByteBuffer out = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+		out.put(MAGIC);
+		out.putInt(VERSION);
+		out.putInt(store.getCapacity());
+		out.putInt(store.getMaxPurchase());
+		out.putInt(store.getMaxReturns());
+		out.putInt(types);
+		out.putInt(spec.getNumWeeks());
+		out.putInt(name.length);
+		out.putDouble(spec.getDiscountFactor());
+		out.putDouble(spec.getPenaltyFee());
+		out.put(name);
+		out.position((int) align(out.position()));
+		for (double price : spec.getPrices()) {
+			out.putDouble(price);
+		}
+		for (int stock : spec.getInitialStock()) {
+			out.putInt(stock);
+		}
+		out.position((int) align(out.position()));
+		for (Matrix m : spec.getProbabilities()) {
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					out.putDouble(m.get(i, j));
+				}
+			}
+		}
+		out.putLong(checksum(out, out.position()));
+		out.flip();
+
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Loads a binary spec by mapping the file; the demand matrices read the mapping directly.
+	 * The model is checked like one loaded from the text format.
+	 * @param spec The problem spec to fill in
+	 * @param filename The file to read
+	 * @throws IOException if the file is not a valid binary spec
+	 */
+	static void load(ProblemSpec spec, String filename) throws IOException {
+		MappedByteBuffer mapped;
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+		ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (in.limit() < HEADER_SIZE + 8) {
+			throw new IOException("Binary spec file is truncated.");
+		}
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (in.get() != MAGIC[i]) {
+				throw new IOException("Not a binary spec file.");
+			}
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IOException(String.format("Unsupported binary spec version %d", version));
+		}
+		int capacity = in.getInt();
+		int maxOrder = in.getInt();
+		int maxReturns = in.getInt();
+		int types = in.getInt();
+		int numWeeks = in.getInt();
+		int nameLength = in.getInt();
+		if (capacity < 0 || types < 0 || nameLength < 0
+				|| length(nameLength, types, capacity + 1) != in.limit()) {
+			throw new IOException("Binary spec file size does not match its header.");
+		}
+		int end = in.limit() - 8;
+		if (in.getLong(end) != checksum(in, end)) {
+			throw new IOException("Binary spec file checksum mismatch.");
+		}
+		double discountFactor = in.getDouble();
+		double penaltyFee = in.getDouble();
+		byte[] name = new byte[nameLength];
+		in.get(name);
+		in.position((int) align(in.position()));
+		List<Double> prices = new ArrayList<Double>(types);
+		for (int i = 0; i < types; i++) {
+			prices.add(in.getDouble());
+		}
+		List<Integer> initialStock = new ArrayList<Integer>(types);
+		for (int i = 0; i < types; i++) {
+			initialStock.add(in.getInt());
+		}
+		in.position((int) align(in.position()));
+		int size = capacity + 1;
+		List<Matrix> probabilities = new ArrayList<Matrix>(types);
+		for (int k = 0; k < types; k++) {
+			ByteBuffer slice = in.slice().order(ByteOrder.LITTLE_ENDIAN);
+			slice.limit(size * size * 8);
+			probabilities.add(new Matrix(size, size, slice.asDoubleBuffer()));
+			in.position(in.position() + size * size * 8);
+		}
+		Store store = new Store(new String(name, StandardCharsets.UTF_8), capacity, maxOrder, maxReturns, types);
+		try {
+			ProblemSpec.validate(store, prices, initialStock, probabilities);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid binary spec: " + e.getMessage());
+		}
+		spec.setModel(store, discountFactor, numWeeks, penaltyFee, prices, initialStock, probabilities);
+	}
+
+	/**
+	 * @param nameLength Length of the store name in bytes
+	 * @param types Number of item types
+	 * @param size Number of rows and columns of every matrix
+	 * @return Length of the file in bytes
+	 */
+	private static long length(int nameLength, int types, int size) {
+		return HEADER_SIZE + align(nameLength) + 8L * types + (4L * types + 7 & ~7L)
+				+ 8L * types * size * size + 8;
+	}
+
+	/**
+	 * @param position A byte offset
+	 * @return The offset rounded up to a multiple of 8
+	 */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * @param data Buffer holding the file from index 0
+	 * @param end End of the checksummed bytes
+	 * @return CRC32 of the bytes before end
+	 */
+	private static long checksum(ByteBuffer data, int end) {
+		ByteBuffer bytes = data.duplicate();
+		bytes.position(0);
+		bytes.limit(end);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+}
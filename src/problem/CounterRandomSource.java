@@ -0,0 +1,65 @@
+package problem;
+
+/**
+ * Counter-based random stream: the n-th number is a hash of the key and n, computed
+ * with the SplitMix64 finalizer. Any position can be reached in constant time, so
+ * streams can jump ahead, and two streams with the same key produce the same numbers
+ * regardless of how many numbers were drawn elsewhere.
+ */
+public class CounterRandomSource implements RandomSource {
+	/** Odd increment of the Weyl sequence, as in SplittableRandom. */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long key;
+	private long counter;
+
+	/**
+	 * Constructor
+	 * @param key The key of the stream
+	 */
+	public CounterRandomSource(long key) {
+		this.key = key;
+	}
+
+	@Override
+	public double nextDouble() {
+		return (mix64(key + GOLDEN_GAMMA * counter++) >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public RandomSource split() {
+		return new CounterRandomSource(mix64(~key + GOLDEN_GAMMA * counter++));
+	}
+
+	/**
+	 * Skips numbers of the stream
+	 * @param n How many numbers to skip
+	 */
+	public void jump(long n) {
+		counter += n;
+	}
+
+	/**
+	 * @return Number of numbers drawn or skipped so far
+	 */
+	public long getPosition() {
+		return counter;
+	}
+
+	/**
+	 * @param position Number of numbers to consider drawn
+	 */
+	public void setPosition(long position) {
+		counter = position;
+	}
+
+	/**
+	 * @param z Value to hash
+	 * @return SplitMix64 finalizer of the value
+	 */
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,59 @@
+package problem;
+
+/**
+ * Shapes of synthetic customer wants distributions used by {@link SpecGenerator}.
+ * Every model is parameterized by the mean wants of a row; rows are truncated to the
+ * capacity and normalized to sum to 1.
+ */
+public enum DemandModel {
+    /** Triangular weights in a band around the mean, zero outside it. */
+    BANDED {
+        @Override
+        void fillWeights(double[] row, double mean) {
+            double halfWidth = Math.max(1, mean / 2);
+            for (int wants = 0; wants < row.length; wants++) {
+                row[wants] = Math.max(0, 1 - Math.abs(wants - mean) / (halfWidth + 1));
+            }
+        }
+    },
+    /** Poisson distribution with the given mean. */
+    POISSON {
+        @Override
+        void fillWeights(double[] row, double mean) {
+            // computed in log space, exp(-mean) underflows for large means
+            double logMean = Math.log(Math.max(mean, Double.MIN_NORMAL));
+            double logFactorial = 0;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int wants = 0; wants < row.length; wants++) {
+                if (wants > 0) {
+                    logFactorial += Math.log(wants);
+                }
+                row[wants] = wants * logMean - logFactorial;
+                max = Math.max(max, row[wants]);
+            }
+            for (int wants = 0; wants < row.length; wants++) {
+                row[wants] = Math.exp(row[wants] - max);
+            }
+        }
+    },
+    /** Discrete Pareto distribution with tail index 1.5, scaled to the given mean where finite. */
+    HEAVY_TAILED {
+        @Override
+        void fillWeights(double[] row, double mean) {
+            double alpha = 1.5;
+            // an untruncated Pareto tail with scale s has mean s / (alpha - 1)
+            double scale = Math.max(0.5, mean * (alpha - 1));
+            for (int wants = 0; wants < row.length; wants++) {
+                row[wants] = Math.pow(1 + wants / scale, -(alpha + 1));
+            }
+        }
+    };
+
+    /**
+     * Fills a row with unnormalized, non-negative weights of the wants 0 to row.length - 1
+     * @param row Weights of the wants
+     * @param mean Mean wants of the row before truncation
+     */
+    abstract void fillWeights(double[] row, double mean);
+
+}
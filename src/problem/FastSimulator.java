@@ -0,0 +1,240 @@
+package problem;
+
+import java.util.List;
+
+/**
+ * Simulator for bulk evaluation. Applies the same rules as {@link Simulator#simulateStep(List)},
+ * but keeps the inventory, user wants and orders in reusable int arrays and caches the prices,
+ * so a step allocates nothing unless history recording is enabled. It prints nothing.
+ */
+public class FastSimulator {
+    private RandomSource random;
+
+	private int currentWeek;
+	private ProblemSpec problemSpec;
+	private Store store;
+	private Matrix[] probabilities;
+	private double[] prices;
+	private int numTypes;
+	private double discountFactor;
+	private double penaltyFee;
+	private int[] stockInventory;
+	private int[] wants;
+	private int[] order;
+	private int[] weekStartInventory;
+    private double totalProfit = 0;
+	private HistoryMode historyMode;
+	private SimulationHistory history;
+
+	/**
+	 * Constructor
+	 * @param spec A ProblemSpec
+	 * @param rng Random stream for sampling user wants, or null for one seeded from the clock
+	 * @param historyMode How much history to record
+	 */
+	public FastSimulator(ProblemSpec spec, RandomSource rng, HistoryMode historyMode) {
+		problemSpec = spec;
+		store = spec.getStore();
+		random = rng == null ? new SplittableRandomSource(System.nanoTime()) : rng;
+		this.historyMode = historyMode;
+		numTypes = store.getMaxTypes();
+		probabilities = spec.getProbabilities().toArray(new Matrix[numTypes]);
+		prices = new double[numTypes];
+		List<Double> p = spec.getPrices();
+		for (int i = 0; i < numTypes; i++) {
+			prices[i] = p.get(i);
+		}
+		discountFactor = spec.getDiscountFactor();
+		penaltyFee = spec.getPenaltyFee();
+		stockInventory = new int[numTypes];
+		wants = new int[numTypes];
+		order = new int[numTypes];
+		weekStartInventory = new int[numTypes];
+		reset();
+	}
+
+	public void reset() {
+		currentWeek = 1;
+		List<Integer> initial = problemSpec.getInitialStock();
+		for (int i = 0; i < numTypes; i++) {
+			stockInventory[i] = initial.get(i);
+		}
+		// An empty history in OFF mode records nothing, so it is shared between episodes
+		if (history == null || historyMode != HistoryMode.OFF) {
+			history = new SimulationHistory(historyMode, numTypes);
+		}
+		totalProfit = 0;
+	}
+
+	/**
+	 * Replaces the random stream used for sampling user wants
+	 * @param rng The random stream
+	 */
+	public void setRandom(RandomSource rng) {
+		random = rng;
+	}
+
+	/**
+	 * Simulate a week. A runtime exception is thrown if the stock order is
+	 * invalid. If the stock order is valid, the customer consumption is sampled
+	 * and the current week is advanced.
+	 * @param stockOrder Item quantities to buy, negative for returns; not modified
+	 */
+	public void simulateStep(int[] stockOrder) {
+		double profit = 0.0;
+
+		System.arraycopy(stockInventory, 0, weekStartInventory, 0, numTypes);
+
+		// ##### Simulate customer consumption
+		for (int j = 0; j < numTypes; j++) {
+			wants[j] = probabilities[j].sampleCdf(stockInventory[j], random.nextDouble());
+		}
+		for (int j = 0; j < numTypes; j++) {
+			// compute profit from sales
+			int sold = Math.min(wants[j], stockInventory[j]);
+			profit += (sold * prices[j] * 0.75);
+
+			// compute missed opportunity penalty
+			int missed = wants[j] - sold;
+			profit -= (missed * prices[j] * 0.25);
+
+			// update stock levels
+			stockInventory[j] -= sold;
+		}
+
+		// ##### Cut items from order if necessary
+		if (stockOrder.length != numTypes) {
+			throw new IllegalArgumentException("Invalid stock order list size");
+		}
+		int sum = 0;
+		for (int i = 0; i < numTypes; i++) {
+			order[i] = stockOrder[i];
+			sum += order[i];
+		}
+		int item = 0;
+		while (sum > store.getCapacity()) {
+			if (order[item] == 0) {
+				// go to next item type
+				item++;
+				if (item >= numTypes) {
+					throw new IllegalArgumentException("Capacity exceeded and cannot cut order any further");
+				}
+			} else {
+				// cut the order of item type i
+				order[item]--;
+				sum--;
+
+				// subtract penalty fee
+				profit -= penaltyFee;
+			}
+		}
+
+		// ##### Apply order and returns to inventory
+		int totalOrdered = 0;
+		int totalReturned = 0;
+		for (int i = 0; i < numTypes; i++) {
+			if (order[i] > 0) {
+				totalOrdered += order[i];
+				stockInventory[i] += order[i];
+			} else {
+				totalReturned += order[i];
+				if (order[i] > stockInventory[i]) {
+					throw new IllegalArgumentException("Return amount exceeds current stock.");
+				}
+				stockInventory[i] -= order[i];
+
+				// subtract return fees
+				profit -= (prices[i] * 0.5 * Math.abs(order[i]));
+			}
+		}
+		if (totalOrdered > store.getMaxPurchase()) {
+			throw new IllegalArgumentException("Number of items ordered too large.");
+		}
+		if (totalReturned > store.getMaxReturns()) {
+			throw new IllegalArgumentException("Number of items returned too large.");
+		}
+		if (historyMode != HistoryMode.OFF) {
+			for (int i = 0; i < numTypes; i++) {
+				history.record(i, weekStartInventory[i], wants[i],
+						order[i] > 0 ? order[i] : 0, order[i] > 0 ? 0 : -order[i]);
+			}
+			history.endWeek();
+		}
+
+		// update total profit
+		totalProfit += (Math.pow(discountFactor, currentWeek - 1) * profit);
+		currentWeek++;
+	}
+
+	/**
+	 * @param dest Array receiving the current stock of every item type
+	 */
+	public void getStockInventory(int[] dest) {
+		System.arraycopy(stockInventory, 0, dest, 0, numTypes);
+	}
+
+	/**
+	 * @return the total profit so far
+	 */
+	public double getTotalProfit() {
+		return totalProfit;
+	}
+
+	public int getCurrentWeek() {
+		return currentWeek;
+	}
+
+	/**
+	 * Get stock inventory from history
+	 * @precondition week < currentWeek and history mode is FULL
+	 * @param week The week to retrieve. Week starts at 1.
+	 * @return the stock inventory at the start of that week.
+	 */
+	public int[] getInventoryAt(int week) {
+		return getWeek(SimulationHistory.INVENTORY, week);
+	}
+
+	/**
+	 * Get order from history, with returns as negative quantities
+	 * @precondition week < currentWeek and history mode is FULL
+	 * @param week The week to retrieve. Week starts at 1.
+	 * @return the order for that week after cutting.
+	 */
+	public int[] getOrderAt(int week) {
+		int[] values = getWeek(SimulationHistory.ORDER, week);
+		for (int i = 0; i < numTypes; i++) {
+			values[i] -= history.get(SimulationHistory.RETURN, week - 1, i);
+		}
+		return values;
+	}
+
+	/**
+	 * Get user request from history
+	 * @precondition week < currentWeek and history mode is FULL
+	 * @param week The week to retrieve. Week starts at 1.
+	 * @return the user request for that week.
+	 */
+	public int[] getUserRequestAt(int week) {
+		return getWeek(SimulationHistory.REQUEST, week);
+	}
+
+	/**
+	 * @param series One of the SimulationHistory series
+	 * @param week The week to retrieve. Week starts at 1.
+	 * @return the recorded values of every item type
+	 */
+	private int[] getWeek(int series, int week) {
+		int[] values = new int[numTypes];
+		for (int i = 0; i < numTypes; i++) {
+			values[i] = history.get(series, week - 1, i);
+		}
+		return values;
+	}
+
+	/**
+	 * @return the history of the current episode
+	 */
+	public SimulationHistory getHistory() {
+		return history;
+	}
+}
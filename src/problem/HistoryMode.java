@@ -0,0 +1,13 @@
+package problem;
+
+/**
+ * How much of the simulation history a simulator keeps.
+ */
+public enum HistoryMode {
+	/** Nothing is recorded. */
+	OFF,
+	/** Only per item type totals of stock, requests, orders and returns are kept. */
+	SUMMARY,
+	/** Every week is recorded, in addition to the totals. */
+	FULL
+}
@@ -0,0 +1,23 @@
+package problem;
+
+/**
+ * Levels of simulator console output, from least to most detailed.
+ */
+public enum LogLevel {
+	/** Nothing is logged. */
+	OFF,
+	/** Only warnings are logged. */
+	WARNING,
+	/** Warnings, the problem spec summary and the total profit of every run are logged. */
+	INFO,
+	/** Everything including the stock, wants and orders of every week is logged. */
+	DEBUG;
+
+	/**
+	 * @param level Level of a message
+	 * @return Whether a logger at this level logs messages of the given level
+	 */
+	public boolean includes(LogLevel level) {
+		return level != OFF && level.ordinal() <= ordinal();
+	}
+}
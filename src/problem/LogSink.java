@@ -0,0 +1,18 @@
+package problem;
+
+/**
+ * Destination of simulator log messages.
+ */
+public interface LogSink {
+
+	/**
+	 * @param level Level of the message
+	 * @param message The message, without a line terminator
+	 */
+	public void write(LogLevel level, String message);
+
+	/**
+	 * Writes out any buffered messages.
+	 */
+	public void flush();
+}
@@ -1,33 +1,245 @@
 package problem;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class Matrix {
-	
+
 	private int numRows;
 	private int numCols;
-	private ArrayList<ArrayList<Double>> data;
-	
+	/** Entries in row-major order, or null if the matrix is backed by a buffer */
+	private double[] data;
+	/** Entries in row-major order if the matrix is backed by a buffer, e.g. a memory-mapped file */
+	private DoubleBuffer buffer;
+	/** Cumulative sums of every row, built on first use */
+	private volatile double[] cdf;
+	/** Walker alias table acceptance probabilities, built on first use */
+	private volatile double[] aliasProb;
+	/** Walker alias table alternatives, built together with aliasProb */
+	private volatile int[] alias;
+
 	public Matrix(double[][] input) {
 		numRows = input.length;
 		numCols = input[0].length;
-		data = new ArrayList<ArrayList<Double>>(numRows);
+		data = new double[numRows * numCols];
 		for (int i = 0; i < numRows; i++) {
-			data.add(new ArrayList<Double>(numCols));
-			for (int j = 0; j < numCols; j++) {
-				data.get(i).add(input[i][j]);
-			}
+			System.arraycopy(input[i], 0, data, i * numCols, numCols);
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 * @param rowMajor Entries in row-major order; the array is used directly, not copied
+	 */
+	public Matrix(int rows, int cols, double[] rowMajor) {
+		if (rowMajor.length != rows * cols) {
+			throw new IllegalArgumentException("Matrix data does not match its dimensions");
 		}
+		numRows = rows;
+		numCols = cols;
+		data = rowMajor;
+	}
+
+	/**
+	 * Constructor
+	 * @param rows Number of rows
+	 * @param cols Number of columns
+	 * @param rowMajor Entries in row-major order from index 0; the buffer is read directly,
+	 *        not copied, and must not be modified
+	 */
+	public Matrix(int rows, int cols, DoubleBuffer rowMajor) {
+		if (rowMajor.limit() != rows * cols) {
+			throw new IllegalArgumentException("Matrix data does not match its dimensions");
+		}
+		numRows = rows;
+		numCols = cols;
+		buffer = rowMajor;
+	}
+
+	public int getNumRows() {
+		return numRows;
+	}
+
+	public int getNumCols() {
+		return numCols;
 	}
-	
+
 	public double get(int row, int col) {
-		return data.get(row).get(col);
-	} 
-	
+		return entry(row * numCols + col);
+	}
+
+	/**
+	 * @param idx Row-major index
+	 * @return The entry at the index
+	 */
+	private double entry(int idx) {
+		return data != null ? data[idx] : buffer.get(idx);
+	}
+
+	/**
+	 * @param row The row to retrieve
+	 * @return Read-only view of the row, backed by the matrix
+	 */
 	public List<Double> getRow(int row) {
-		return Collections.unmodifiableList(data.get(row));
+		return new RowView(row * numCols);
+	}
+
+	/**
+	 * Samples a column from a row treated as a probability distribution, by binary search
+	 * over the cumulative sums of the row. Returns the same column as a linear scan
+	 * for the first cumulative sum reaching r.
+	 * @param row The row to sample from
+	 * @param r A uniform random number in [0, 1)
+	 * @return The sampled column; the last column with nonzero probability if r
+	 *         exceeds the rounded sum of the row
+	 */
+	public int sampleCdf(int row, double r) {
+		double[] c = cdf;
+		if (c == null) {
+			c = buildCdf();
+		}
+		int lo = row * numCols;
+		int hi = lo + numCols - 1;
+		if (c[hi] < r) {
+			while (hi > lo && entry(hi) == 0) {
+				hi--;
+			}
+			return hi - row * numCols;
+		}
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (c[mid] >= r) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo - row * numCols;
+	}
+
+	/**
+	 * Samples a column from a row treated as a probability distribution in constant time,
+	 * using Walker's alias method. The distribution is the same as for
+	 * {@link #sampleCdf(int, double)}, but a given r generally maps to a different column.
+	 * @param row The row to sample from
+	 * @param r A uniform random number in [0, 1)
+	 * @return The sampled column
+	 */
+	public int sampleAlias(int row, double r) {
+		double[] p = aliasProb;
+		int[] a = alias;
+		if (p == null || a == null) {
+			buildAlias();
+			p = aliasProb;
+			a = alias;
+		}
+		double x = r * numCols;
+		int col = (int) x;
+		if (col >= numCols) {
+			col = numCols - 1;
+		}
+		int idx = row * numCols + col;
+		return x - col < p[idx] ? col : a[idx];
+	}
+
+	/**
+	 * @return Cumulative sums of every row, summed in column order
+	 */
+	private double[] buildCdf() {
+		double[] c = new double[numRows * numCols];
+		for (int i = 0; i < numRows; i++) {
+			double sum = 0;
+			for (int j = i * numCols; j < (i + 1) * numCols; j++) {
+				sum += entry(j);
+				c[j] = sum;
+			}
+		}
+		cdf = c;
+		return c;
+	}
+
+	/**
+	 * Builds the alias tables of every row with Vose's variant of Walker's method.
+	 */
+	private synchronized void buildAlias() {
+		if (aliasProb != null && alias != null) {
+			return;
+		}
+		double[] p = new double[numRows * numCols];
+		int[] a = new int[numRows * numCols];
+		int[] small = new int[numCols];
+		int[] large = new int[numCols];
+		double[] scaled = new double[numCols];
+		for (int i = 0; i < numRows; i++) {
+			int base = i * numCols;
+			double sum = 0;
+			for (int j = 0; j < numCols; j++) {
+				sum += entry(base + j);
+			}
+			int ns = 0;
+			int nl = 0;
+			for (int j = 0; j < numCols; j++) {
+				scaled[j] = entry(base + j) / sum * numCols;
+				if (scaled[j] < 1) {
+					small[ns++] = j;
+				} else {
+					large[nl++] = j;
+				}
+			}
+			while (ns > 0 && nl > 0) {
+				int s = small[--ns];
+				int l = large[--nl];
+				p[base + s] = scaled[s];
+				a[base + s] = l;
+				scaled[l] = scaled[l] + scaled[s] - 1;
+				if (scaled[l] < 1) {
+					small[ns++] = l;
+				} else {
+					large[nl++] = l;
+				}
+			}
+			// Whatever is left has probability 1 up to rounding
+			while (nl > 0) {
+				int l = large[--nl];
+				p[base + l] = 1;
+				a[base + l] = l;
+			}
+			while (ns > 0) {
+				int s = small[--ns];
+				p[base + s] = 1;
+				a[base + s] = s;
+			}
+		}
+		aliasProb = p;
+		alias = a;
+	}
+
+	/**
+	 * Read-only list view of a single row.
+	 */
+	private class RowView extends AbstractList<Double> implements RandomAccess {
+		private final int offset;
+
+		RowView(int rowOffset) {
+			offset = rowOffset;
+		}
+
+		@Override
+		public Double get(int index) {
+			if (index < 0 || index >= numCols) {
+				throw new IndexOutOfBoundsException("Index: " + index);
+			}
+			return entry(offset + index);
+		}
+
+		@Override
+		public int size() {
+			return numCols;
+		}
 	}
 
 }
@@ -0,0 +1,15 @@
+package problem;
+
+/**
+ * Converts binary simulation output back to the text format.
+ * Usage: OutputConverter binaryFile textFile
+ */
+public class OutputConverter {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Binary input and text output paths expected.");
+		}
+		BinaryOutputWriter.convertToText(args[0], args[1]);
+	}
+}
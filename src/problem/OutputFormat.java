@@ -0,0 +1,32 @@
+package problem;
+
+import java.io.IOException;
+
+/**
+ * Formats simulation output can be saved in.
+ */
+public enum OutputFormat {
+	/** The text format of {@link ProblemSpec#saveOutput}. */
+	TEXT {
+		@Override
+		public OutputWriter open(String filename, int flushInterval) throws IOException {
+			return new TextOutputWriter(filename, flushInterval);
+		}
+	},
+	/** The compact format of {@link BinaryOutputWriter}. */
+	BINARY {
+		@Override
+		public OutputWriter open(String filename, int flushInterval) throws IOException {
+			return new BinaryOutputWriter(filename, flushInterval);
+		}
+	};
+
+	/**
+	 * @param filename The file path to save to
+	 * @param flushInterval Number of weeks after which buffered output is written out,
+	 *        or 0 to write only when the buffer is full
+	 * @return A writer creating or truncating the file
+	 * @throws IOException
+	 */
+	public abstract OutputWriter open(String filename, int flushInterval) throws IOException;
+}
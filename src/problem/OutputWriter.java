@@ -0,0 +1,34 @@
+package problem;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Incremental writer of simulation output. The header is written first, then the
+ * simulator appends one week at a time, so nothing has to be kept in memory.
+ */
+public interface OutputWriter extends Closeable {
+
+	/**
+	 * Writes the header of the output
+	 * @param numWeeks The number of weeks of the problem spec
+	 * @param initialStock Initial stock of each item type
+	 * @throws IOException
+	 */
+	public void begin(int numWeeks, int[] initialStock) throws IOException;
+
+	/**
+	 * Appends a week of output
+	 * @param request User wants of each item type
+	 * @param order Items ordered of each item type
+	 * @param returned Items returned of each item type, as positive quantities
+	 * @throws IOException
+	 */
+	public void writeWeek(int[] request, int[] order, int[] returned) throws IOException;
+
+	/**
+	 * Writes out buffered output
+	 * @throws IOException
+	 */
+	public void flush() throws IOException;
+}
@@ -2,10 +2,10 @@ package problem;
 
 
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 
 /**
@@ -39,56 +39,70 @@ public class ProblemSpec {
 	}
 	
 	/**
-	 * Loads the user's stochastic model from file
-	 * @param filename the path of the text file to load.
+	 * Constructor for a model built in memory, e.g. by {@link SpecGenerator}
+	 * @param store The store, a preset or a custom one
+	 * @param discountFactor Discount factor
+	 * @param numWeeks Number of weeks the store will be evaluated
+	 * @param penaltyFee Penalty per item cut from an order
+	 * @param prices Price of each item type
+	 * @param initialStock Initial stock of each item type
+	 * @param probabilities Wants probabilities of each item type, by stock level
+	 * @throws IllegalArgumentException if the model does not fit the store
+	 */
+	public ProblemSpec(Store store, double discountFactor, int numWeeks, double penaltyFee,
+			List<Double> prices, List<Integer> initialStock, List<Matrix> probabilities) {
+		validate(store, prices, initialStock, probabilities);
+		setModel(store, discountFactor, numWeeks, penaltyFee, new ArrayList<Double>(prices),
+				new ArrayList<Integer>(initialStock), new ArrayList<Matrix>(probabilities));
+	}
+	
+	/**
+	 * Loads the user's stochastic model from file, in the text format or the
+	 * format of {@link BinarySpec}, which is recognized by its first bytes
+	 * @param filename the path of the text or binary file to load.
 	 * @throws IOException
 	 * 		if the text file doesn't exist or doesn't meet the assignment
 	 *      specifications.
 	 */
 	public void loadInputFile(String filename) throws IOException {
 		modelLoaded = false;
-		BufferedReader input = new BufferedReader(new FileReader(filename));
-		String line;
+		if (BinarySpec.isBinary(filename)) {
+		    BinarySpec.load(this, filename);
+		    return;
+		}
+		SpecTokenizer input = new SpecTokenizer(filename);
 		int lineNo = 0;
-		Scanner s;
 		try {
-		    // read store type
-            line = input.readLine();
-            lineNo++;
-            store = new Store(line.trim().toLowerCase());
+		    // read store type, either a preset name or a custom store as
+		    // name capacity maxOrder maxReturns maxTypes
+            nextLine(input, ++lineNo);
+            String[] storeFields = input.restOfLine().trim().split("\\s+");
+            if (storeFields.length == 5) {
+                store = new Store(storeFields[0], parseStoreField(storeFields[1], lineNo),
+                        parseStoreField(storeFields[2], lineNo), parseStoreField(storeFields[3], lineNo),
+                        parseStoreField(storeFields[4], lineNo));
+            } else {
+                store = new Store(storeFields[0].toLowerCase());
+            }
 
             // read discount factor
-		    line = input.readLine();
-            lineNo++;
-            s = new Scanner(line);
-            s.useLocale(Locale.US); // For decimal point handling for computers set up for foreign locale
-            discountFactor = s.nextDouble();
-            s.close();
+            nextLine(input, ++lineNo);
+            discountFactor = input.nextDouble();
 
             // read number of weeks over which the store is tested
-			line = input.readLine();
-			lineNo++;
-			s = new Scanner(line);
-			numWeeks = s.nextInt();
-			s.close();
+            nextLine(input, ++lineNo);
+			numWeeks = input.nextInt();
 
             // read penalty fee
-			line = input.readLine();
-			lineNo++;
-			s = new Scanner(line);
-            s.useLocale(Locale.US);
-			penaltyFee = s.nextDouble();
-			s.close();
+            nextLine(input, ++lineNo);
+			penaltyFee = input.nextDouble();
 			
 			// read item prices
-            line = input.readLine();
-            lineNo++;
-            s = new Scanner(line);
-            s.useLocale(Locale.US);
+            nextLine(input, ++lineNo);
             prices = new ArrayList<Double>(store.getMaxTypes());
             for(int i = 0; i < store.getMaxTypes(); i++) {
-                if(s.hasNextDouble()) {
-                    prices.add(s.nextDouble());
+                if(input.hasNextDouble()) {
+                    prices.add(input.nextDouble());
                 } else {
                     throw new IOException("Not enough prices for the store type.");
                 }
@@ -96,42 +110,35 @@ public class ProblemSpec {
             }
 
             // read initial stock levels
-            line = input.readLine();
-            lineNo++;
-            s = new Scanner(line);
+            nextLine(input, ++lineNo);
             initialStock = new ArrayList<Integer>(store.getMaxTypes());
             for(int i = 0; i < store.getMaxTypes(); i++) {
-                if(s.hasNextInt()) {
-                    initialStock.add(s.nextInt());
+                if(input.hasNextInt()) {
+                    initialStock.add(input.nextInt());
                 } else {
                     throw new IOException("Not enough initial stock levels for the store type.");
                 }
             }
 			
-			// read customer behaviour model
+			// read customer behaviour model straight into row-major matrix storage
+			int size = store.getCapacity() + 1;
 			probabilities = new ArrayList<Matrix>();
 			for (int k = 0; k < store.getMaxTypes(); k++) {
-				double[][] data = new double[store.getCapacity() + 1]
-						[store.getCapacity() + 1];
-				for (int i = 0; i <= store.getCapacity(); i++) {
-					line = input.readLine();
-					lineNo++;
+				double[] data = new double[size * size];
+				for (int i = 0; i < size; i++) {
+					nextLine(input, ++lineNo);
 					double rowSum = 0;
-					s = new Scanner(line);
-                    s.useLocale(Locale.US);
-					for (int j = 0; j <= store.getCapacity(); j++) {
-						data[i][j] = s.nextDouble();
-						rowSum += data[i][j];
+					for (int j = i * size; j < (i + 1) * size; j++) {
+						data[j] = input.nextDouble();
+						rowSum += data[j];
 					}
-					s.close();
 					if (Math.round(rowSum*100000) != 100000) {
 						throw new InputMismatchException(
 								"Row probabilities do not sum to 1.");
 					}
 				}
-				probabilities.add(new Matrix(data));
+				probabilities.add(new Matrix(size, size, data));
 			}
-			modelLoaded = true;
 		} catch (InputMismatchException e) {
 			throw new IOException(String.format(
 					"Invalid number format on line %d: %s", lineNo,
@@ -139,12 +146,152 @@ public class ProblemSpec {
 		} catch (NoSuchElementException e) {
 			throw new IOException(String.format("Not enough tokens on line %d",
 					lineNo));
-		} catch (NullPointerException e) {
+		}
+		try {
+			validate(store, prices, initialStock, probabilities);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(e.getMessage());
+		}
+		modelLoaded = true;
+	}
+	
+	/**
+	 * Moves the tokenizer to the next line of the file
+	 * @param input The tokenizer
+	 * @param lineNo Number of the line expected
+	 * @throws IOException if the file ended
+	 */
+	private static void nextLine(SpecTokenizer input, int lineNo) throws IOException {
+		if (!input.nextLine()) {
 			throw new IOException(String.format(
 					"Line %d expected, but file ended.", lineNo));
+		}
+	}
+	
+	/**
+	 * @param field A field of a custom store line
+	 * @param lineNo Number of the line
+	 * @return The value of the field
+	 * @throws IOException if the field is not a non-negative integer
+	 */
+	private static int parseStoreField(String field, int lineNo) throws IOException {
+		try {
+			int value = Integer.parseInt(field);
+			if (value >= 0) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IOException(String.format(
+				"Invalid store field on line %d: %s", lineNo, field));
+	}
+	
+	/**
+	 * Checks a model against its store, whichever way it was loaded or built
+	 * @param store The store
+	 * @param prices Price of each item type
+	 * @param initialStock Initial stock of each item type
+	 * @param probabilities Wants probabilities of each item type, by stock level
+	 * @throws IllegalArgumentException if the model does not fit the store
+	 */
+	static void validate(Store store, List<Double> prices, List<Integer> initialStock,
+			List<Matrix> probabilities) {
+		int types = store.getMaxTypes();
+		int size = store.getCapacity() + 1;
+		if (prices.size() != types || initialStock.size() != types || probabilities.size() != types) {
+			throw new IllegalArgumentException("Model does not have one entry per item type.");
+		}
+		int total = 0;
+		for (int stock : initialStock) {
+			if (stock < 0) {
+				throw new IllegalArgumentException("Initial stock is negative.");
+			}
+			total += stock;
+		}
+		if (total > store.getCapacity()) {
+			throw new IllegalArgumentException("Initial stock exceeds the capacity.");
+		}
+		for (Matrix m : probabilities) {
+			if (m.getNumRows() != size || m.getNumCols() != size) {
+				throw new IllegalArgumentException("Matrix does not match the capacity.");
+			}
+			for (int i = 0; i < size; i++) {
+				double rowSum = 0;
+				for (int j = 0; j < size; j++) {
+					double p = m.get(i, j);
+					if (!(p >= 0)) {
+						throw new IllegalArgumentException("Row probabilities must not be negative.");
+					}
+					rowSum += p;
+				}
+				if (Math.round(rowSum*100000) != 100000) {
+					throw new IllegalArgumentException("Row probabilities do not sum to 1.");
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the whole model, e.g. with one decoded from a binary spec
+	 */
+	void setModel(Store store, double discountFactor, int numWeeks, double penaltyFee,
+			List<Double> prices, List<Integer> initialStock, List<Matrix> probabilities) {
+		this.store = store;
+		this.discountFactor = discountFactor;
+		this.numWeeks = numWeeks;
+		this.penaltyFee = penaltyFee;
+		this.prices = prices;
+		this.initialStock = initialStock;
+		this.probabilities = probabilities;
+		modelLoaded = true;
+	}
+	
+	/**
+	 * Saves the model in the text format read by {@link #loadInputFile(String)}.
+	 * Doubles are written so that they parse back to the same values.
+	 * @param filename The file path to save to
+	 * @throws IOException
+	 */
+	public void saveSpec(String filename) throws IOException {
+		String ls = System.getProperty("line.separator");
+		Writer output = new BufferedWriter(new FileWriter(filename));
+		try {
+			if (store.isPreset()) {
+				output.write(store.getName() + ls);
+			} else {
+				output.write(store.getName() + " " + store.getCapacity() + " " + store.getMaxPurchase()
+						+ " " + store.getMaxReturns() + " " + store.getMaxTypes() + ls);
+			}
+			output.write(discountFactor + ls);
+			output.write(numWeeks + ls);
+			output.write(penaltyFee + ls);
+			writeLine(output, prices, ls);
+			writeLine(output, initialStock, ls);
+			for (Matrix m : probabilities) {
+				for (int i = 0; i < m.getNumRows(); i++) {
+					writeLine(output, m.getRow(i), ls);
+				}
+			}
 		} finally {
-			input.close();
+			output.close();
+		}
+	}
+	
+	/**
+	 * @param output The writer
+	 * @param items Values to write, separated by spaces
+	 * @param ls The line separator
+	 * @throws IOException
+	 */
+	private static void writeLine(Writer output, List<?> items, String ls) throws IOException {
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0) {
+				output.write(' ');
+			}
+			output.write(String.valueOf(items.get(i)));
 		}
+		output.write(ls);
 	}
 	
 	/**
@@ -156,48 +303,33 @@ public class ProblemSpec {
 	 */
 	public void saveOutput(String filename, double totalProfit, List<List<Integer>> requestHistory,
                            List<List<Integer>> orderHistory, List<List<Integer>> returnHistory) throws IOException {
-		String ls = System.getProperty("line.separator");
-		FileWriter output = new FileWriter(filename);
-
-        // write number of weeks
-        output.write(String.format("%d %s", numWeeks, ls));
-
-        // write initial stock
-        for(int item : initialStock) {
-            output.write(item + " ");
-        }
-        output.write(ls);
-
-        for(int week = 0; week < numWeeks; week++) {
-
-            // write request
-            for(int item : requestHistory.get(week)) {
-                output.write(item + " ");
-            }
-            output.write(ls);
-
-            // do not write order and request for week N
-  //          if(week == numWeeks-1) {
-   //             break;
-   //         }
-
-            // write order
-            for(int item : orderHistory.get(week)) {
-                output.write(item + " ");
-            }
-            output.write(ls);
-
-
-            // write returns
-            for(int item : returnHistory.get(week)) {
-                output.write(item + " ");
+		int numTypes = initialStock.size();
+		OutputWriter output = new TextOutputWriter(filename, 0);
+		try {
+            output.begin(numWeeks, toArray(initialStock, new int[numTypes]));
+            int[] request = new int[numTypes];
+            int[] order = new int[numTypes];
+            int[] returned = new int[numTypes];
+            for(int week = 0; week < numWeeks; week++) {
+                output.writeWeek(toArray(requestHistory.get(week), request),
+                        toArray(orderHistory.get(week), order),
+                        toArray(returnHistory.get(week), returned));
             }
-            output.write(ls);
-
-        }
+		} finally {
+			output.close();
+		}
+	}
 
-		//output.write(String.format("%f", totalProfit));
-		output.close();
+	/**
+	 * @param items Numbers to copy
+	 * @param dest Array receiving the numbers, as long as the list
+	 * @return dest
+	 */
+	private static int[] toArray(List<Integer> items, int[] dest) {
+		for (int i = 0; i < dest.length; i++) {
+			dest[i] = items.get(i);
+		}
+		return dest;
 	}
 
 	public boolean isModelLoaded() {
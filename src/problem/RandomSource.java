@@ -0,0 +1,20 @@
+package problem;
+
+/**
+ * Stream of uniform random numbers used by the simulators to sample user wants.
+ * Implementations are not thread safe; parallel simulations should each use
+ * their own stream obtained by {@link #split()}.
+ */
+public interface RandomSource {
+
+	/**
+	 * @return A uniform random number in [0, 1)
+	 */
+	public double nextDouble();
+
+	/**
+	 * @return A new stream, statistically independent of this one, whose
+	 *         sequence is determined by the state of this stream
+	 */
+	public RandomSource split();
+}
@@ -0,0 +1,27 @@
+package problem;
+
+/**
+ * Kinds of random streams the simulators can be seeded with.
+ */
+public enum RandomSourceType {
+	/** {@link SplittableRandomSource} */
+	SPLITTABLE {
+		@Override
+		public RandomSource create(long seed) {
+			return new SplittableRandomSource(seed);
+		}
+	},
+	/** {@link CounterRandomSource} */
+	COUNTER {
+		@Override
+		public RandomSource create(long seed) {
+			return new CounterRandomSource(seed);
+		}
+	};
+
+	/**
+	 * @param seed The seed of the stream
+	 * @return A new stream of this kind; streams with the same seed produce the same numbers
+	 */
+	public abstract RandomSource create(long seed);
+}
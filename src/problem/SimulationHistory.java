@@ -0,0 +1,161 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar record of a simulation. Every series of every item type is an int column
+ * stored in fixed size chunks, so recording a week never copies earlier weeks and
+ * allocates only when a new chunk is started.
+ */
+public class SimulationHistory {
+	/** Stock at the start of the week. */
+	public static final int INVENTORY = 0;
+	/** Items requested by customers. */
+	public static final int REQUEST = 1;
+	/** Items ordered, after cutting. */
+	public static final int ORDER = 2;
+	/** Items returned. */
+	public static final int RETURN = 3;
+	/** Number of series. */
+	private static final int SERIES = 4;
+	/** Number of weeks per chunk is 2^CHUNK_BITS. */
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+	private HistoryMode mode;
+	private int numTypes;
+	/** Number of complete weeks recorded */
+	private int weeks;
+	/** Sum over recorded weeks, at series * numTypes + type */
+	private long[] totals;
+	/** Chunks of every column, at series * numTypes + type */
+	private int[][][] columns;
+
+	/**
+	 * Constructor
+	 * @param mode How much to record
+	 * @param numTypes Number of item types
+	 */
+	public SimulationHistory(HistoryMode mode, int numTypes) {
+		this.mode = mode;
+		this.numTypes = numTypes;
+		totals = new long[SERIES * numTypes];
+		columns = new int[SERIES * numTypes][][];
+		for (int c = 0; c < columns.length; c++) {
+			columns[c] = new int[1][];
+		}
+	}
+
+	public HistoryMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Records one item type of the current week
+	 * @param type The item type
+	 * @param inventory Stock at the start of the week
+	 * @param request Items requested by customers
+	 * @param order Items ordered
+	 * @param returned Items returned
+	 */
+	public void record(int type, int inventory, int request, int order, int returned) {
+		if (mode == HistoryMode.OFF) {
+			return;
+		}
+		totals[INVENTORY * numTypes + type] += inventory;
+		totals[REQUEST * numTypes + type] += request;
+		totals[ORDER * numTypes + type] += order;
+		totals[RETURN * numTypes + type] += returned;
+		if (mode == HistoryMode.FULL) {
+			put(INVENTORY * numTypes + type, inventory);
+			put(REQUEST * numTypes + type, request);
+			put(ORDER * numTypes + type, order);
+			put(RETURN * numTypes + type, returned);
+		}
+	}
+
+	/**
+	 * Completes the current week, after all item types were recorded
+	 */
+	public void endWeek() {
+		weeks++;
+	}
+
+	/**
+	 * @param column Index of the column
+	 * @param value Value of the current week
+	 */
+	private void put(int column, int value) {
+		int[][] chunks = columns[column];
+		int chunk = weeks >>> CHUNK_BITS;
+		if (chunk >= chunks.length) {
+			int[][] grown = new int[chunks.length * 2][];
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+			chunks = grown;
+			columns[column] = chunks;
+		}
+		if (chunks[chunk] == null) {
+			chunks[chunk] = new int[CHUNK_SIZE];
+		}
+		chunks[chunk][weeks & (CHUNK_SIZE - 1)] = value;
+	}
+
+	/**
+	 * @return Number of complete weeks recorded
+	 */
+	public int getWeeks() {
+		return weeks;
+	}
+
+	/**
+	 * @param series One of INVENTORY, REQUEST, ORDER or RETURN
+	 * @param type The item type
+	 * @return Sum of the series over all recorded weeks
+	 */
+	public long getTotal(int series, int type) {
+		return totals[series * numTypes + type];
+	}
+
+	/**
+	 * @precondition mode is FULL and week < getWeeks()
+	 * @param series One of INVENTORY, REQUEST, ORDER or RETURN
+	 * @param week The week to retrieve. Week starts at 0.
+	 * @param type The item type
+	 * @return The recorded value
+	 */
+	public int get(int series, int week, int type) {
+		if (mode != HistoryMode.FULL) {
+			throw new IllegalStateException("Weekly history is only recorded in FULL mode");
+		}
+		if (week < 0 || week >= weeks) {
+			throw new IndexOutOfBoundsException("Week not recorded: " + week);
+		}
+		return columns[series * numTypes + type][week >>> CHUNK_BITS][week & (CHUNK_SIZE - 1)];
+	}
+
+	/**
+	 * @param series One of INVENTORY, REQUEST, ORDER or RETURN
+	 * @param week The week to retrieve. Week starts at 0.
+	 * @return The recorded values of every item type
+	 */
+	public List<Integer> getWeek(int series, int week) {
+		List<Integer> values = new ArrayList<Integer>(numTypes);
+		for (int type = 0; type < numTypes; type++) {
+			values.add(get(series, week, type));
+		}
+		return values;
+	}
+
+	/**
+	 * @param series One of INVENTORY, REQUEST, ORDER or RETURN
+	 * @return The recorded values of every week
+	 */
+	public List<List<Integer>> getSeries(int series) {
+		List<List<Integer>> values = new ArrayList<List<Integer>>(weeks);
+		for (int week = 0; week < weeks; week++) {
+			values.add(getWeek(series, week));
+		}
+		return values;
+	}
+}
@@ -1,25 +1,28 @@
 package problem;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 public class Simulator {
-    private Random random = new Random();
+    private RandomSource random;
 
 	private int currentWeek;
 	private ProblemSpec problemSpec;
 	private List<Integer> stockInventory;
-	private ArrayList<List<Integer>> stockInventoryHistory;
-	private ArrayList<List<Integer>> orderHistory;
-    private ArrayList<List<Integer>> returnHistory;
-	private ArrayList<List<Integer>> requestHistory;
+	private HistoryMode historyMode = HistoryMode.FULL;
+	private SimulationHistory history;
 	private ArrayList<Double> penaltyHistory;
     private double totalProfit = 0;
 	private Store store;
 	private List<Matrix> probabilities;
-	private boolean verbose = true;
+	private LogLevel logLevel = LogLevel.DEBUG;
+	private LogSink logSink;
+	private OutputWriter outputWriter;
+	private int[] outRequest;
+	private int[] outOrder;
+	private int[] outReturn;
 	
 	/** 
 	 * True if you want the store to start off being full, with random
@@ -41,28 +44,47 @@ public class Simulator {
 	 * @param spec A ProblemSpec
 	 */
 	public Simulator(ProblemSpec spec) {
+	    this(spec, null, true);
+	}
+	
+	/**
+	 * Constructor
+	 * @param spec A ProblemSpec
+	 * @param rng Random stream for sampling user wants, or null for one seeded from the clock
+	 * @param verbose Whether to print console output, i.e. log at DEBUG rather than OFF level
+	 */
+	public Simulator(ProblemSpec spec, RandomSource rng, boolean verbose) {
+	    this(spec, rng, verbose ? LogLevel.DEBUG : LogLevel.OFF);
+	}
+	
+	/**
+	 * Constructor
+	 * @param spec A ProblemSpec
+	 * @param rng Random stream for sampling user wants, or null for one seeded from the clock
+	 * @param level The most detailed level of messages to log
+	 */
+	public Simulator(ProblemSpec spec, RandomSource rng, LogLevel level) {
 	    problemSpec = spec;
+	    random = rng == null ? new SplittableRandomSource(System.nanoTime()) : rng;
+	    logLevel = level;
 		store = problemSpec.getStore();
 		probabilities = problemSpec.getProbabilities();
 	
         reset();
 		
-		if (verbose) {
-			System.out.println("Problem spec loaded.");
-			System.out.println("Store: " + store.getName());
-			System.out.println("Discount factor: " + 
+		if (isLoggable(LogLevel.INFO)) {
+			log(LogLevel.INFO, "Problem spec loaded.");
+			log(LogLevel.INFO, "Store: " + store.getName());
+			log(LogLevel.INFO, "Discount factor: " + 
 					problemSpec.getDiscountFactor());
-			System.out.println("Penalty for order cutting: " + problemSpec.getPenaltyFee());
+			log(LogLevel.INFO, "Penalty for order cutting: " + problemSpec.getPenaltyFee());
 		}
 	}
 	
 	public void reset() {
 	    currentWeek = 1;
 	    stockInventory = problemSpec.getInitialStock();
-	    stockInventoryHistory = new ArrayList<List<Integer>>();
-	    orderHistory = new ArrayList<List<Integer>>();
-        returnHistory = new ArrayList<List<Integer>>();
-	    requestHistory = new ArrayList<List<Integer>>();
+	    history = new SimulationHistory(historyMode, store.getMaxTypes());
 	    penaltyHistory = new ArrayList<Double>();
         totalProfit = 0;
 
@@ -75,15 +97,14 @@ public class Simulator {
 	 * @param order List of item quantities to buy.
 	 */
 	public void simulateStep(List<Integer> order) {
-		if (verbose && currentWeek > problemSpec.getNumWeeks()) {
-			System.out.println("Warning: problem spec num weeks exceeded.");
+		if (isLoggable(LogLevel.WARNING) && currentWeek > problemSpec.getNumWeeks()) {
+			log(LogLevel.WARNING, "Warning: problem spec num weeks exceeded.");
 		}
+		boolean debug = isLoggable(LogLevel.DEBUG);
 
 		// compute profit for this week
 		double profit = 0.0;
 
-        // record stock level at start of week
-        stockInventoryHistory.add(stockInventory);
         ArrayList<Integer> weekStartInventory = new ArrayList<Integer>(stockInventory);
 
         // ##### Simulate customer consumption
@@ -102,11 +123,8 @@ public class Simulator {
             stockInventory.set(j, stockInventory.get(j) - sold);
         }
 
-        // Add user wants to history
-        requestHistory.add(wants);
-
         // record stock level after consumption
-        ArrayList<Integer> afterConsumptionInventory = new ArrayList<Integer>(stockInventory);
+        List<Integer> afterConsumptionInventory = debug ? new ArrayList<Integer>(stockInventory) : null;
 
 
 		// ##### Cut items from order if necessary
@@ -169,45 +187,50 @@ public class Simulator {
             throw new IllegalArgumentException("Number of items returned too large.");
         }
 
-        ArrayList<Integer> afterOrderInventory = new ArrayList<Integer>(stockInventory);
-
-        // record order and return history
-        ArrayList<Integer> itemOrders = new ArrayList<Integer>();
-        ArrayList<Integer> itemReturns = new ArrayList<Integer>();
+        List<Integer> afterOrderInventory = debug ? new ArrayList<Integer>(stockInventory) : null;
 
+        // record stock, user wants, orders and returns
         for(int j = 0; j < order.size(); j++) {
-            if(order.get(j) > 0) {
-                itemOrders.add(order.get(j));
-                itemReturns.add(0);
-            } else {
-                itemOrders.add(0);
-                itemReturns.add(order.get(j) * -1);
+            int ordered = order.get(j) > 0 ? order.get(j) : 0;
+            int returned = order.get(j) > 0 ? 0 : order.get(j) * -1;
+            history.record(j, weekStartInventory.get(j), wants.get(j), ordered, returned);
+            if (outputWriter != null) {
+                outRequest[j] = wants.get(j);
+                outOrder[j] = ordered;
+                outReturn[j] = returned;
+            }
+        }
+        history.endWeek();
+        if (outputWriter != null) {
+            try {
+                outputWriter.writeWeek(outRequest, outOrder, outReturn);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
-
-		orderHistory.add(itemOrders);
-        returnHistory.add(itemReturns);
 
 
         // update total profit
         totalProfit += (Math.pow(problemSpec.getDiscountFactor(), currentWeek - 1) * profit);
 		
-		if (verbose) {
-			System.out.println();
-			System.out.println("Week " + currentWeek);
-			System.out.println("Start stock:\t\t\t\t" + weekStartInventory);
-            System.out.println("Customer wants:\t\t\t\t" + wants);
-            System.out.println("After customer consumption:\t" + afterConsumptionInventory);
-			System.out.println("Order:\t\t\t\t\t\t" + order);
-			System.out.println("Post-order:\t\t\t\t\t" + afterOrderInventory);
-			System.out.println("End:\t\t\t\t\t\t" + stockInventory);
-			System.out.println("Profit this week: " + profit);
-		
-			if (currentWeek == problemSpec.getNumWeeks()) {
-				System.out.println();
-                System.out.println("Total discounted profit: " + totalProfit);
-			}
-		}	
+		if (debug) {
+			log(LogLevel.DEBUG, "");
+			log(LogLevel.DEBUG, "Week " + currentWeek);
+			log(LogLevel.DEBUG, "Start stock:\t\t\t\t" + weekStartInventory);
+            log(LogLevel.DEBUG, "Customer wants:\t\t\t\t" + wants);
+            log(LogLevel.DEBUG, "After customer consumption:\t" + afterConsumptionInventory);
+			log(LogLevel.DEBUG, "Order:\t\t\t\t\t\t" + order);
+			log(LogLevel.DEBUG, "Post-order:\t\t\t\t\t" + afterOrderInventory);
+			log(LogLevel.DEBUG, "End:\t\t\t\t\t\t" + stockInventory);
+			log(LogLevel.DEBUG, "Profit this week: " + profit);
+		}
+		if (currentWeek == problemSpec.getNumWeeks() && isLoggable(LogLevel.INFO)) {
+			log(LogLevel.INFO, "");
+			log(LogLevel.INFO, "Total discounted profit: " + totalProfit);
+		}
+		if (currentWeek == problemSpec.getNumWeeks() && logSink != null) {
+			logSink.flush();
+		}
 		currentWeek ++;	
 	}
 	
@@ -221,8 +244,7 @@ public class Simulator {
 		List<Integer> wants = new ArrayList<Integer>();
 		for (int k = 0; k < store.getMaxTypes(); k++) {
 			int i = state.get(k);
-			List<Double> prob = probabilities.get(k).getRow(i);
-			wants.add(sampleIndex(prob));
+			wants.add(probabilities.get(k).sampleCdf(i, random.nextDouble()));
 		}
 		return wants;
 	}
@@ -251,15 +273,127 @@ public class Simulator {
 	 * @throws IOException
 	 */
 	public void saveOutput(String filename) throws IOException {
-		problemSpec.saveOutput(filename, getTotalProfit(), requestHistory, orderHistory, returnHistory);
+		problemSpec.saveOutput(filename, getTotalProfit(),
+				history.getSeries(SimulationHistory.REQUEST),
+				history.getSeries(SimulationHistory.ORDER),
+				history.getSeries(SimulationHistory.RETURN));
+	}
+
+	/**
+	 * Streams the output of the current episode to a writer from now on, one week per step,
+	 * so the history need not be kept; call right after reset(). The header is written
+	 * immediately and the writer is used until {@link #closeOutput()}.
+	 * @param writer The writer to stream to
+	 * @throws IOException
+	 */
+	public void setOutputWriter(OutputWriter writer) throws IOException {
+		int numTypes = store.getMaxTypes();
+		outRequest = new int[numTypes];
+		outOrder = new int[numTypes];
+		outReturn = new int[numTypes];
+		List<Integer> initial = problemSpec.getInitialStock();
+		for (int i = 0; i < numTypes; i++) {
+			outRequest[i] = initial.get(i);
+		}
+		writer.begin(problemSpec.getNumWeeks(), outRequest);
+		outputWriter = writer;
+	}
+
+	/**
+	 * Closes the writer set by {@link #setOutputWriter(OutputWriter)}, if any, and stops streaming
+	 * @throws IOException
+	 */
+	public void closeOutput() throws IOException {
+		if (outputWriter != null) {
+			OutputWriter writer = outputWriter;
+			outputWriter = null;
+			writer.close();
+		}
+	}
+
+	/**
+	 * Selects how much history to record, starting with the next reset.
+	 * Saving output and retrieving weeks from history require FULL.
+	 * @param mode The history mode
+	 */
+	public void setHistoryMode(HistoryMode mode) {
+		historyMode = mode;
+	}
+
+	/**
+	 * @return the history of the current episode
+	 */
+	public SimulationHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * Replaces the random stream used for sampling user wants, e.g. before
+	 * resetting the simulator for a new episode
+	 * @param rng The random stream
+	 */
+	public void setRandom(RandomSource rng) {
+		random = rng;
 	}
 
 	/**
 	 * Set verbose to true for console output
-	 * @param verbose
+	 * @param verbose Whether to log at DEBUG rather than OFF level
 	 */
 	public void setVerbose(boolean verbose) {
-		this.verbose = verbose;
+		logLevel = verbose ? LogLevel.DEBUG : LogLevel.OFF;
+	}
+
+	/**
+	 * @param level The most detailed level of messages to log
+	 */
+	public void setLogLevel(LogLevel level) {
+		logLevel = level;
+	}
+
+	public LogLevel getLogLevel() {
+		return logLevel;
+	}
+
+	/**
+	 * Replaces the destination of log messages, flushing the previous one
+	 * @param sink The new log sink
+	 */
+	public void setLogSink(LogSink sink) {
+		flushLog();
+		logSink = sink;
+	}
+
+	/**
+	 * Callers should check this before building a message, so that nothing is
+	 * formatted for levels which are not logged
+	 * @param level Level of a message
+	 * @return Whether messages of the level are logged
+	 */
+	public boolean isLoggable(LogLevel level) {
+		return logLevel.includes(level);
+	}
+
+	/**
+	 * @param level Level of the message
+	 * @param message The message to log if the level is enabled
+	 */
+	public void log(LogLevel level, String message) {
+		if (logLevel.includes(level)) {
+			if (logSink == null) {
+				logSink = new WriterLogSink(System.out);
+			}
+			logSink.write(level, message);
+		}
+	}
+
+	/**
+	 * Writes out any buffered log messages.
+	 */
+	public void flushLog() {
+		if (logSink != null) {
+			logSink.flush();
+		}
 	}
 	
 	/**
@@ -279,7 +413,7 @@ public class Simulator {
 	 * @return the stockInventory for that week.
 	 */
 	public List<Integer> getInventoryAt(int week) {
-	    return stockInventoryHistory.get(week - 1);
+	    return history.getWeek(SimulationHistory.INVENTORY, week - 1);
 	}
 	
 	/**
@@ -289,7 +423,7 @@ public class Simulator {
      * @return the shopping list for that week.
      */
 	public List<Integer> getOrderAt(int week) {
-	    return orderHistory.get(week - 1);
+	    return history.getWeek(SimulationHistory.ORDER, week - 1);
 	}
 	
 	 /**
@@ -299,7 +433,7 @@ public class Simulator {
      * @return the user request for that week.
      */
     public List<Integer> getUserRequestAt(int week) {
-        return requestHistory.get(week - 1);
+        return history.getWeek(SimulationHistory.REQUEST, week - 1);
     }
 
     /**
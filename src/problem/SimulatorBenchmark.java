@@ -0,0 +1,166 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures simulated weeks per second of {@link Simulator}, {@link FastSimulator} and
+ * {@link BatchSimulator} with the same simple order-up-to policy. The first two share one random
+ * stream; the batch simulator gives every episode its own stream split from a stream with the same
+ * seed, so its profit differs.
+ * Usage: SimulatorBenchmark inputFile [weeks]
+ */
+public class SimulatorBenchmark {
+
+	/** The default number of weeks to simulate with each simulator. */
+	public static int DEFAULT_WEEKS = 2000000;
+	/** The number of episodes the batch simulator advances together. */
+	public static int BATCH_EPISODES = 1024;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Input path not given.");
+		}
+		ProblemSpec spec = new ProblemSpec(args[0]);
+		int weeks = args.length > 1 ? Integer.valueOf(args[1]) : DEFAULT_WEEKS;
+
+		// Warm up the simulators before measuring
+		runSimulator(spec, weeks / 10);
+		runFastSimulator(spec, weeks / 10);
+		runBatchSimulator(spec, weeks / 10);
+
+		long start = System.nanoTime();
+		double profit = runSimulator(spec, weeks);
+		double slow = weeks / ((System.nanoTime() - start) / 1e9);
+		System.out.printf("Simulator:     %,.0f weeks/s (profit %f)\n", slow, profit);
+
+		start = System.nanoTime();
+		profit = runFastSimulator(spec, weeks);
+		double fast = weeks / ((System.nanoTime() - start) / 1e9);
+		System.out.printf("FastSimulator: %,.0f weeks/s (profit %f)\n", fast, profit);
+		System.out.printf("Speed-up: %.2fx\n", fast / slow);
+
+		start = System.nanoTime();
+		profit = runBatchSimulator(spec, weeks);
+		double batch = batchWeeks(spec, weeks) / ((System.nanoTime() - start) / 1e9);
+		System.out.printf("BatchSimulator: %,.0f weeks/s (profit %f)\n", batch, profit);
+		System.out.printf("Speed-up: %.2fx\n", batch / slow);
+	}
+
+	/**
+	 * @param spec The problem spec
+	 * @param weeks Number of weeks to simulate
+	 * @return Sum of total profits of all episodes
+	 */
+	private static double runSimulator(ProblemSpec spec, int weeks) {
+		Simulator simulator = new Simulator(spec, new SplittableRandomSource(1), false);
+		simulator.setHistoryMode(HistoryMode.OFF);
+		Store store = spec.getStore();
+		int[] inventory = new int[store.getMaxTypes()];
+		int[] order = new int[store.getMaxTypes()];
+		double profit = 0;
+		for (int w = 0; w < weeks; w++) {
+			if (w % spec.getNumWeeks() == 0) {
+				profit += simulator.getTotalProfit();
+				simulator.reset();
+			}
+			List<Integer> stock = simulator.getStockInventory();
+			for (int i = 0; i < inventory.length; i++) {
+				inventory[i] = stock.get(i);
+			}
+			orderUpTo(store, inventory, order);
+			List<Integer> shopping = new ArrayList<Integer>(order.length);
+			for (int item : order) {
+				shopping.add(item);
+			}
+			simulator.simulateStep(shopping);
+		}
+		return profit + simulator.getTotalProfit();
+	}
+
+	/**
+	 * @param spec The problem spec
+	 * @param weeks Number of weeks to simulate
+	 * @return Sum of total profits of all episodes
+	 */
+	private static double runFastSimulator(ProblemSpec spec, int weeks) {
+		FastSimulator simulator = new FastSimulator(spec, new SplittableRandomSource(1), HistoryMode.OFF);
+		Store store = spec.getStore();
+		int[] inventory = new int[store.getMaxTypes()];
+		int[] order = new int[store.getMaxTypes()];
+		double profit = 0;
+		for (int w = 0; w < weeks; w++) {
+			if (w % spec.getNumWeeks() == 0) {
+				profit += simulator.getTotalProfit();
+				simulator.reset();
+			}
+			simulator.getStockInventory(inventory);
+			orderUpTo(store, inventory, order);
+			simulator.simulateStep(order);
+		}
+		return profit + simulator.getTotalProfit();
+	}
+
+	/**
+	 * Simulates as many batches of BATCH_EPISODES episodes as fit into the given number of weeks, at least one.
+	 * @param spec The problem spec
+	 * @param weeks Number of weeks to simulate
+	 * @return Sum of total profits of all episodes
+	 */
+	private static double runBatchSimulator(ProblemSpec spec, int weeks) {
+		final Store store = spec.getStore();
+		final int numTypes = store.getMaxTypes();
+		RandomSource master = new SplittableRandomSource(1);
+		RandomSource[] streams = new RandomSource[BATCH_EPISODES];
+		for (int e = 0; e < BATCH_EPISODES; e++) {
+			streams[e] = master.split();
+		}
+		BatchSimulator simulator = new BatchSimulator(spec, streams);
+		BatchPolicy policy = new BatchPolicy() {
+			private int[] inventory = new int[numTypes];
+			private int[] order = new int[numTypes];
+
+			@Override
+			public void generateStockOrders(int[] stock, int numWeeksLeft, int[] orders) {
+				for (int base = 0; base < stock.length; base += numTypes) {
+					System.arraycopy(stock, base, inventory, 0, numTypes);
+					orderUpTo(store, inventory, order);
+					System.arraycopy(order, 0, orders, base, numTypes);
+				}
+			}
+		};
+		double profit = 0;
+		for (long w = 0; w < batchWeeks(spec, weeks); w += (long) BATCH_EPISODES * spec.getNumWeeks()) {
+			simulator.run(policy);
+			for (int e = 0; e < BATCH_EPISODES; e++) {
+				profit += simulator.getTotalProfit(e);
+			}
+		}
+		return profit;
+	}
+
+	/**
+	 * @param spec The problem spec
+	 * @param weeks Requested number of weeks
+	 * @return Number of weeks simulated by the batch simulator
+	 */
+	private static long batchWeeks(ProblemSpec spec, int weeks) {
+		long perBatch = (long) BATCH_EPISODES * spec.getNumWeeks();
+		return Math.max(1, weeks / perBatch) * perBatch;
+	}
+
+	/**
+	 * Orders every item type up to an equal share of the capacity, within the order limit.
+	 * @param store The store
+	 * @param inventory Current stock of every item type
+	 * @param order Filled with the order of every item type
+	 */
+	private static void orderUpTo(Store store, int[] inventory, int[] order) {
+		int target = store.getCapacity() / store.getMaxTypes();
+		int budget = store.getMaxPurchase();
+		for (int i = 0; i < inventory.length; i++) {
+			order[i] = Math.max(0, Math.min(budget, target - inventory[i]));
+			budget -= order[i];
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package problem;
+
+/**
+ * Converts problem specs between the text format and the binary format of {@link BinarySpec}.
+ * The input format is detected from the file; the output format defaults to the other one.
+ * Usage: SpecConverter inputFile outputFile [text|binary]
+ */
+public class SpecConverter {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("Input and output paths expected.");
+		}
+		boolean toBinary = !BinarySpec.isBinary(args[0]);
+		if (args.length > 2) {
+			toBinary = args[2].trim().equalsIgnoreCase("binary");
+		}
+		ProblemSpec spec = new ProblemSpec(args[0]);
+		if (toBinary) {
+			BinarySpec.write(spec, args[1]);
+		} else {
+			spec.saveSpec(args[1]);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generates problem specs of custom stores of any size for scaling tests. The mean wants of
+ * every item type are drawn from the seed and grow slightly with the stock level; the shape of
+ * the wants distribution is given by a {@link DemandModel}. The same seed and settings always
+ * give the same spec.
+ * Usage: SpecGenerator outputFile name capacity maxOrder maxReturns maxTypes
+ *        [-demand banded|poisson|heavy_tailed] [-seed S] [-format text|binary]
+ */
+public class SpecGenerator {
+	/** Store of the generated specs */
+	private Store store;
+	/** Seed of the generated values */
+	private long seed;
+	/** Shape of the wants distributions */
+	private DemandModel demand = DemandModel.POISSON;
+	private double discountFactor = 0.95;
+	private int numWeeks = 50;
+	private double penaltyFee = 5.0;
+	/** Bounds of the item prices */
+	private double minPrice = 5.0;
+	private double maxPrice = 50.0;
+	/** Bounds of the mean wants at zero stock, as fractions of the capacity */
+	private double minDemand = 0.05;
+	private double maxDemand = 0.3;
+
+	/**
+	 * Constructor
+	 * @param store The store of the generated specs; its name must not contain whitespace
+	 * @param seed Seed of the generated values
+	 */
+	public SpecGenerator(Store store, long seed) {
+		if (store.getName().isEmpty() || store.getName().matches(".*\\s.*")) {
+			throw new IllegalArgumentException("Store name must be a single word.");
+		}
+		this.store = store;
+		this.seed = seed;
+	}
+
+	public void setDemand(DemandModel demand) {
+		this.demand = demand;
+	}
+
+	public void setDiscountFactor(double discountFactor) {
+		this.discountFactor = discountFactor;
+	}
+
+	public void setNumWeeks(int numWeeks) {
+		this.numWeeks = numWeeks;
+	}
+
+	public void setPenaltyFee(double penaltyFee) {
+		this.penaltyFee = penaltyFee;
+	}
+
+	/**
+	 * @param min Lowest item price
+	 * @param max Highest item price
+	 */
+	public void setPriceRange(double min, double max) {
+		minPrice = min;
+		maxPrice = max;
+	}
+
+	/**
+	 * @param min Lowest mean wants at zero stock, as a fraction of the capacity
+	 * @param max Highest mean wants at zero stock, as a fraction of the capacity
+	 */
+	public void setDemandRange(double min, double max) {
+		minDemand = min;
+		maxDemand = max;
+	}
+
+	/**
+	 * @return A new spec
+	 */
+	public ProblemSpec generate() {
+		SplittableRandom random = new SplittableRandom(seed);
+		int types = store.getMaxTypes();
+		int capacity = store.getCapacity();
+		List<Double> prices = new ArrayList<Double>(types);
+		List<Integer> initialStock = new ArrayList<Integer>(types);
+		List<Matrix> probabilities = new ArrayList<Matrix>(types);
+		// half the capacity is stocked initially, spread over random item types
+		int[] stock = new int[types];
+		for (int n = 0; n < capacity / 2 && types > 0; n++) {
+			stock[random.nextInt(types)]++;
+		}
+		for (int i = 0; i < types; i++) {
+			// whole cents, so the text format stays short
+			prices.add(Math.round(100 * (minPrice + random.nextDouble() * (maxPrice - minPrice))) / 100.0);
+			initialStock.add(stock[i]);
+			double mean = (minDemand + random.nextDouble() * (maxDemand - minDemand)) * capacity;
+			probabilities.add(demandMatrix(capacity, mean));
+		}
+		return new ProblemSpec(store, discountFactor, numWeeks, penaltyFee, prices, initialStock,
+				probabilities);
+	}
+
+	/**
+	 * @param capacity Capacity of the store
+	 * @param mean Mean wants at zero stock
+	 * @return Matrix of wants probabilities by stock level, rows summing to 1
+	 */
+	private Matrix demandMatrix(int capacity, double mean) {
+		int size = capacity + 1;
+		double[] data = new double[size * size];
+		double[] row = new double[size];
+		for (int stock = 0; stock < size; stock++) {
+			// customers want a little more of what they see on the shelves
+			demand.fillWeights(row, mean * (1 + 0.25 * stock / Math.max(1, capacity)));
+			double sum = 0;
+			for (int wants = 0; wants < size; wants++) {
+				sum += row[wants];
+			}
+			for (int wants = 0; wants < size; wants++) {
+				data[stock * size + wants] = row[wants] / sum;
+			}
+		}
+		return new Matrix(size, size, data);
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> positional = new ArrayList<String>();
+		DemandModel demand = DemandModel.POISSON;
+		long seed = 1;
+		boolean binary = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i].trim();
+			if (arg.equals("-demand") && i + 1 < args.length) {
+				demand = DemandModel.valueOf(args[++i].trim().toUpperCase());
+			} else if (arg.equals("-seed") && i + 1 < args.length) {
+				seed = Long.valueOf(args[++i].trim());
+			} else if (arg.equals("-format") && i + 1 < args.length) {
+				binary = args[++i].trim().equalsIgnoreCase("binary");
+			} else {
+				positional.add(arg);
+			}
+		}
+		if (positional.size() < 6) {
+			throw new IllegalArgumentException(
+					"Output path, store name, capacity, max order, max returns and max types expected.");
+		}
+		Store store = new Store(positional.get(1), Integer.valueOf(positional.get(2)),
+				Integer.valueOf(positional.get(3)), Integer.valueOf(positional.get(4)),
+				Integer.valueOf(positional.get(5)));
+		SpecGenerator generator = new SpecGenerator(store, seed);
+		generator.setDemand(demand);
+		ProblemSpec spec = generator.generate();
+		if (binary) {
+			BinarySpec.write(spec, positional.get(0));
+		} else {
+			spec.saveSpec(positional.get(0));
+		}
+	}
+}
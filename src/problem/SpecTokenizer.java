@@ -0,0 +1,285 @@
+package problem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Line-oriented tokenizer of problem spec files. The whole file is memory-mapped and numbers
+ * are parsed straight from its bytes, without building strings or matching regular expressions.
+ * Failures are reported with the exceptions a per-line {@link java.util.Scanner} would throw, so
+ * {@link ProblemSpec} can turn them into the same messages.
+ */
+class SpecTokenizer {
+	/** Largest mantissa whose digits are all exact in a double. */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	/** Powers of ten which are exact doubles. */
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private ByteBuffer data;
+	/** Position of the next unread byte of the current line. */
+	private int pos;
+	/** End of the current line, excluding the line terminator. */
+	private int lineEnd;
+	/** Start of the next line. */
+	private int next;
+	/** Start of the current token. */
+	private int tokenStart;
+	/** End of the current token. */
+	private int tokenEnd;
+
+	/**
+	 * @param filename The file to read
+	 * @throws IOException
+	 */
+	SpecTokenizer(String filename) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		try {
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param buffer The bytes of a spec file, from position to limit
+	 */
+	SpecTokenizer(ByteBuffer buffer) {
+		data = buffer.slice();
+	}
+
+	/**
+	 * Moves to the next line, with the same line terminators as BufferedReader.readLine()
+	 * @return false if the file ended
+	 */
+	boolean nextLine() {
+		int limit = data.limit();
+		if (next >= limit) {
+			return false;
+		}
+		pos = next;
+		int i = pos;
+		while (i < limit && data.get(i) != '\n' && data.get(i) != '\r') {
+			i++;
+		}
+		lineEnd = i;
+		if (i < limit && data.get(i) == '\r') {
+			i++;
+		}
+		if (i < limit && data.get(i) == '\n' && (i == lineEnd || data.get(i - 1) == '\r')) {
+			i++;
+		}
+		next = i;
+		return true;
+	}
+
+	/**
+	 * @return The current line as a string, consuming it
+	 */
+	String restOfLine() {
+		byte[] bytes = new byte[lineEnd - pos];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = data.get(pos + i);
+		}
+		pos = lineEnd;
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * @return Whether the current line has another token
+	 */
+	boolean hasNext() {
+		skipWhitespace();
+		return pos < lineEnd;
+	}
+
+	/**
+	 * @return Whether the next token of the current line is a double; does not consume it
+	 */
+	boolean hasNextDouble() {
+		int saved = pos;
+		try {
+			nextDouble();
+			return true;
+		} catch (NoSuchElementException e) {
+			return false;
+		} finally {
+			pos = saved;
+		}
+	}
+
+	/**
+	 * @return Whether the next token of the current line is an int; does not consume it
+	 */
+	boolean hasNextInt() {
+		int saved = pos;
+		try {
+			nextInt();
+			return true;
+		} catch (NoSuchElementException e) {
+			return false;
+		} finally {
+			pos = saved;
+		}
+	}
+
+	/**
+	 * @return The next token of the current line as an int
+	 * @throws NoSuchElementException if the line has no more tokens
+	 * @throws InputMismatchException if the token is not an int
+	 */
+	int nextInt() {
+		nextToken();
+		int i = tokenStart;
+		boolean negative = false;
+		if (data.get(i) == '-' || data.get(i) == '+') {
+			negative = data.get(i) == '-';
+			i++;
+		}
+		if (i == tokenEnd) {
+			throw new InputMismatchException();
+		}
+		long v = 0;
+		for (; i < tokenEnd; i++) {
+			int d = data.get(i) - '0';
+			if (d < 0 || d > 9 || v > Integer.MAX_VALUE + 1L) {
+				try {
+					return Integer.parseInt(fallbackToken());
+				} catch (NumberFormatException e) {
+					throw new InputMismatchException();
+				}
+			}
+			v = v * 10 + d;
+		}
+		v = negative ? -v : v;
+		if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+			throw new InputMismatchException();
+		}
+		return (int) v;
+	}
+
+	/**
+	 * Parses plain decimal numbers of up to 15 significant digits exactly like
+	 * Double.parseDouble, by one correctly rounded division of exact doubles; anything
+	 * else is handed to Double.parseDouble.
+	 * @return The next token of the current line as a double
+	 * @throws NoSuchElementException if the line has no more tokens
+	 * @throws InputMismatchException if the token is not a number
+	 */
+	double nextDouble() {
+		nextToken();
+		int i = tokenStart;
+		boolean negative = false;
+		if (data.get(i) == '-' || data.get(i) == '+') {
+			negative = data.get(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		for (; i < tokenEnd; i++) {
+			byte b = data.get(i);
+			if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else if (b >= '0' && b <= '9') {
+				seenDigit = true;
+				if (mantissa != 0 || b != '0') {
+					// leading zeros are not significant
+					digits++;
+				}
+				if (digits > 15) {
+					return parseFallback();
+				}
+				mantissa = mantissa * 10 + (b - '0');
+				if (seenPoint) {
+					scale++;
+				}
+			} else {
+				return parseFallback();
+			}
+		}
+		if (!seenDigit) {
+			throw new InputMismatchException();
+		}
+		if (mantissa >= MAX_EXACT_MANTISSA || scale >= EXACT_POWERS_OF_TEN.length) {
+			return parseFallback();
+		}
+		double v = mantissa / EXACT_POWERS_OF_TEN[scale];
+		return negative ? -v : v;
+	}
+
+	/**
+	 * @return The current token parsed by Double.parseDouble, ignoring grouping commas
+	 * @throws InputMismatchException if the token is not a number
+	 */
+	private double parseFallback() {
+		String token = fallbackToken();
+		char last = token.charAt(token.length() - 1);
+		if (last == 'd' || last == 'D' || last == 'f' || last == 'F' || token.startsWith("0x")) {
+			throw new InputMismatchException();
+		}
+		try {
+			return Double.parseDouble(token);
+		} catch (NumberFormatException e) {
+			throw new InputMismatchException();
+		}
+	}
+
+	/**
+	 * @return The current token as a string without grouping commas
+	 */
+	private String fallbackToken() {
+		StringBuilder sb = new StringBuilder(tokenEnd - tokenStart);
+		for (int i = tokenStart; i < tokenEnd; i++) {
+			char c = (char) (data.get(i) & 0xff);
+			if (c != ',') {
+				sb.append(c);
+			}
+		}
+		if (sb.length() == 0) {
+			throw new InputMismatchException();
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Marks the next token of the current line and consumes it
+	 * @throws NoSuchElementException if the line has no more tokens
+	 */
+	private void nextToken() {
+		skipWhitespace();
+		if (pos >= lineEnd) {
+			throw new NoSuchElementException();
+		}
+		tokenStart = pos;
+		while (pos < lineEnd && !isWhitespace(data.get(pos))) {
+			pos++;
+		}
+		tokenEnd = pos;
+	}
+
+	private void skipWhitespace() {
+		while (pos < lineEnd && isWhitespace(data.get(pos))) {
+			pos++;
+		}
+	}
+
+	/**
+	 * @param b A byte of the file
+	 * @return Whether the byte separates tokens
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\f' || b == 0x0b || b == 0x1c || b == 0x1d
+				|| b == 0x1e || b == 0x1f;
+	}
+}
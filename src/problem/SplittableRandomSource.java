@@ -0,0 +1,36 @@
+package problem;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random stream backed by {@link SplittableRandom}.
+ */
+public class SplittableRandomSource implements RandomSource {
+	private SplittableRandom random;
+
+	/**
+	 * Constructor
+	 * @param seed The seed of the stream
+	 */
+	public SplittableRandomSource(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	/**
+	 * Constructor
+	 * @param random The generator to draw from
+	 */
+	public SplittableRandomSource(SplittableRandom random) {
+		this.random = random;
+	}
+
+	@Override
+	public double nextDouble() {
+		return random.nextDouble();
+	}
+
+	@Override
+	public RandomSource split() {
+		return new SplittableRandomSource(random.split());
+	}
+}
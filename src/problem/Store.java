@@ -63,6 +63,21 @@ public class Store {
 		}
 	}
 
+	/**
+	 * @return True iff the store has the name and limits of one of the presets,
+	 *         so the name alone describes it
+	 */
+	public boolean isPreset() {
+		Store preset;
+		try {
+			preset = new Store(name);
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		return preset.capacity == capacity && preset.maxOrder == maxOrder
+				&& preset.maxReturns == maxReturns && preset.maxTypes == maxTypes;
+	}
+
 	public String getName() {
 		return name;
 	}
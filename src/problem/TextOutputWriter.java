@@ -0,0 +1,127 @@
+package problem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes simulation output in the text format of {@link ProblemSpec#saveOutput}: the number
+ * of weeks, the initial stock, then the requests, orders and returns of every week, one line
+ * each with every number followed by a space. Numbers are formatted directly into a byte buffer
+ * which is written to a file channel when it fills up, every flushInterval weeks, and on close.
+ */
+public class TextOutputWriter implements OutputWriter {
+	/** Size of the output buffer in bytes. */
+	public static final int BUFFER_SIZE = 1 << 16;
+	/** Room needed for a number and the space after it. */
+	private static final int MAX_NUMBER_LENGTH = 12;
+
+	private FileChannel channel;
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private byte[] lineSeparator =
+			System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII);
+	private byte[] digits = new byte[MAX_NUMBER_LENGTH];
+	private int flushInterval;
+	private int weeksSinceFlush;
+
+	/**
+	 * Constructor
+	 * @param filename The file path to save to
+	 * @param flushInterval Number of weeks after which buffered output is written out,
+	 *        or 0 to write only when the buffer is full
+	 * @throws IOException
+	 */
+	public TextOutputWriter(String filename, int flushInterval) throws IOException {
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	public void begin(int numWeeks, int[] initialStock) throws IOException {
+		// write number of weeks
+		writeNumber(numWeeks);
+		newLine();
+
+		// write initial stock
+		writeLine(initialStock);
+	}
+
+	@Override
+	public void writeWeek(int[] request, int[] order, int[] returned) throws IOException {
+		writeLine(request);
+		writeLine(order);
+		writeLine(returned);
+		weeksSinceFlush++;
+		if (flushInterval > 0 && weeksSinceFlush >= flushInterval) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		weeksSinceFlush = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * @param items Numbers to write, each followed by a space, then a line separator
+	 * @throws IOException
+	 */
+	private void writeLine(int[] items) throws IOException {
+		for (int item : items) {
+			writeNumber(item);
+		}
+		newLine();
+	}
+
+	/**
+	 * @param value Number to write in decimal, followed by a space
+	 * @throws IOException
+	 */
+	private void writeNumber(int value) throws IOException {
+		if (buffer.remaining() < MAX_NUMBER_LENGTH) {
+			flush();
+		}
+		long v = value;
+		if (v < 0) {
+			buffer.put((byte) '-');
+			v = -v;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while (v > 0);
+		while (n > 0) {
+			buffer.put(digits[--n]);
+		}
+		buffer.put((byte) ' ');
+	}
+
+	/**
+	 * @throws IOException
+	 */
+	private void newLine() throws IOException {
+		if (buffer.remaining() < lineSeparator.length) {
+			flush();
+		}
+		buffer.put(lineSeparator);
+	}
+}
@@ -0,0 +1,54 @@
+package problem;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Log sink writing one line per message through a buffer, so the underlying stream is
+ * only written to when the buffer fills up or the sink is flushed.
+ */
+public class WriterLogSink implements LogSink {
+	/** Size of the buffer in chars. */
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private BufferedWriter writer;
+
+	/**
+	 * Constructor
+	 * @param out The stream to write to, e.g. System.out; it is never closed by the sink
+	 */
+	public WriterLogSink(OutputStream out) {
+		this(new OutputStreamWriter(out));
+	}
+
+	/**
+	 * Constructor
+	 * @param out The writer to write to; it is never closed by the sink
+	 */
+	public WriterLogSink(Writer out) {
+		writer = new BufferedWriter(out, BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(LogLevel level, String message) {
+		try {
+			writer.write(message);
+			writer.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void flush() {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Counters of solving the process of a single item type: sweeps, backups, the residual
+ * of every sweep, wall time and bytes allocated by the solving thread. Filled by
+ * {@link SolverMetrics} and, as the listener of the solve, by the solver itself.
+ */
+public class ItemMetrics implements SolveListener {
+    /** Item type id, or -1 for the joint process of all item types. */
+    private final int itemId;
+    /** Price of the item type. */
+    private final double price;
+    /** Storage space reserved for the item type. */
+    private final int storage;
+    /** Name of the algorithm. */
+    private final String solver;
+    /** Clock and allocation counter when the solve started. */
+    private final long startNanos;
+    private final long startBytes;
+    private long sweeps;
+    private long backups;
+    private long wallNanos;
+    private long allocatedBytes = -1;
+    private StopReason stopReason;
+    private double lossBound = Double.NaN;
+    /** Residual of every sweep, the first residualCount entries are used. */
+    private double[] residuals = new double[16];
+    private int residualCount;
+
+    /**
+     * @param id Item type id, or -1 for the joint process
+     * @param itemPrice Price of the item type
+     * @param itemStorage Storage space reserved for the item type
+     * @param solverName Name of the algorithm
+     */
+    ItemMetrics(final int id, final double itemPrice, final int itemStorage, final String solverName) {
+        itemId = id;
+        price = itemPrice;
+        storage = itemStorage;
+        solver = solverName;
+        startBytes = SolverMetrics.allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void sweepCompleted(final long sweep, final double residual) {
+        if (residualCount == residuals.length) {
+            residuals = Arrays.copyOf(residuals, 2 * residualCount);
+        }
+        residuals[residualCount++] = residual;
+    }
+
+    /**
+     * Stops the clock and the allocation counter.
+     * @param sweepCount Number of sweeps of the solve
+     * @param backupCount Number of state backups of the solve
+     * @param reason Criterion which ended the solve, or null if unknown
+     * @param bound Certified bound on the policy loss, or NaN
+     */
+    void finish(final long sweepCount, final long backupCount, final StopReason reason, final double bound) {
+        stopReason = reason;
+        lossBound = bound;
+        wallNanos = System.nanoTime() - startNanos;
+        long bytes = SolverMetrics.allocatedBytes();
+        allocatedBytes = bytes < 0 || startBytes < 0 ? -1 : bytes - startBytes;
+        sweeps = sweepCount;
+        backups = backupCount;
+    }
+
+    public int getItemId() {
+        return itemId;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getStorage() {
+        return storage;
+    }
+
+    public String getSolver() {
+        return solver;
+    }
+
+    /**
+     * @return Number of sweeps; zero if the policy came from the policy cache
+     */
+    public long getSweeps() {
+        return sweeps;
+    }
+
+    public long getBackups() {
+        return backups;
+    }
+
+    public double getWallMillis() {
+        return wallNanos / 1e6;
+    }
+
+    /**
+     * @return Bytes allocated by the thread which solved the item type, or -1 if the JVM does
+     *         not count them; allocations of worker threads of parallel schedules are not included
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return Criterion which ended the solve, {@link StopReason#CACHED} if the policy came from
+     *         the policy cache, or null if the algorithm does not report one
+     */
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @return Certified bound on how much less the policy earns than an optimal one, or NaN
+     */
+    public double getLossBound() {
+        return lossBound;
+    }
+
+    /**
+     * @return Residual of every sweep reported by the solver, NaN for sweeps without one
+     */
+    public double[] getResidualHistory() {
+        return Arrays.copyOf(residuals, residualCount);
+    }
+
+    /**
+     * @return Last residual reported by the solver, or NaN if there is none
+     */
+    public double getFinalResidual() {
+        for (int i = residualCount - 1; i >= 0; i--) {
+            if (!Double.isNaN(residuals[i])) {
+                return residuals[i];
+            }
+        }
+        return Double.NaN;
+    }
+}
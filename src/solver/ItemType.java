@@ -8,6 +8,7 @@ public class ItemType{
     private double price;
     private int storage;
     private Map<Integer, Integer> policy;
+    private int[] horizonPolicy;
     
     public ItemType(int typeId, double itemTypePrice) {
         id = typeId;
@@ -38,6 +39,28 @@ public class ItemType{
         policy = orderingPolicy;
     }
     
+    /**
+     * @param policyTable Recommended change in stock with w weeks left and stock level s,
+     *        at index w * (storage + 1) + s
+     */
+    public void setHorizonPolicy(int[] policyTable) {
+        horizonPolicy = policyTable;
+    }
+    
+    /**
+     * @param weeksLeft Number of weeks left after the current one
+     * @param stock Amount of items in stock
+     * @return Recommended change in stock from the finite horizon policy
+     */
+    public int getHorizonOrder(int weeksLeft, int stock) {
+        int levels = storage + 1;
+        if (stock < 0 || stock >= levels) {
+            return 0;
+        }
+        int row = Math.min(weeksLeft, horizonPolicy.length / levels - 1);
+        return horizonPolicy[row * levels + stock];
+    }
+    
     public final String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(id);
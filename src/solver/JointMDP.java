@@ -0,0 +1,356 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import problem.Matrix;
+
+/**
+ * Class representing Markov Decision Process over all item types of a store at once.
+ * The state is the vector of stock levels after the agent acted, encoded as a mixed-radix
+ * integer with one digit of base capacity + 1 per item type. Customer wants of different item types
+ * are independent, so the expectation over next states is taken one item type at a time from the
+ * per-type transition matrices and the joint transition matrix is never built.
+ * Unlike {@link MDP}, the storage space, order size and return size limits are shared by all item
+ * types, and returns cost half the item price as in the simulator.
+ */
+public class JointMDP {
+    /** Largest number of encoded states the solver will allocate arrays for. */
+    public static final int MAX_ENCODED_STATES = 1 << 26;
+
+    /** Max number of items the store can stock. */
+    private int capacity;
+    /** Max number of items the store can order in a week. */
+    private int maxOrder;
+    /** Max number of items the store can return in a week. */
+    private int maxReturns;
+    /** Number of item types. */
+    private int numTypes;
+    /** Base of every digit of the state encoding, i.e. capacity + 1. */
+    private int radix;
+    /** Prices of item types. */
+    private double[] prices;
+    /** Discount factor. */
+    private double gamma;
+    /** Weight of the digit of each item type in the state encoding. */
+    private int[] place;
+    /** Encoded states whose stock levels fit into the storage space, in increasing order. */
+    private int[] validStates;
+    /** Expected reward of each item type over the customer wants, by stock level. */
+    private double[][] expectedRewards;
+    /** Probability of each remainder after customer consumption, by item type, at stock * radix + remainder. */
+    private double[][] remainderProbs;
+    /** Expected utility of each encoded post-action state. */
+    private double[] values;
+    /** Best utility reachable by an action from each encoded remainder state. */
+    private double[] actionValues;
+    /** Post-action state recommended for each encoded remainder state. */
+    private int[] bestPost;
+    /** Number of sweeps performed by the last solve. */
+    private long sweeps;
+    /** Receives the progress of solves, or null. */
+    private SolveListener listener;
+    /** Stock levels of the post-action state being evaluated. */
+    private int[] postDigits;
+    /** Remainders of the outcome being evaluated. */
+    private int[] outcomeDigits;
+    /** Remainders of the state whose actions are being searched. */
+    private int[] remainderDigits;
+    /** Best action value found by the current action search. */
+    private double searchBest;
+    /** Post-action state of the best action found by the current action search. */
+    private int searchBestPost;
+
+    /**
+     * @param storageSpace Max number of items the store can stock
+     * @param orderSize Max number of items the store can order in a week
+     * @param returnSize Max number of items the store can return in a week
+     * @param itemPrices Prices of item types
+     * @param discount Process discount factor
+     * @param transProbs Transition matrix of every item type
+     */
+    public JointMDP(final int storageSpace, final int orderSize, final int returnSize,
+                final List<Double> itemPrices, final double discount, final List<Matrix> transProbs) {
+        capacity = storageSpace;
+        maxOrder = orderSize;
+        maxReturns = returnSize;
+        numTypes = itemPrices.size();
+        radix = capacity + 1;
+        gamma = discount;
+        prices = new double[numTypes];
+        for (int i = 0; i < numTypes; i++) {
+            prices[i] = itemPrices.get(i);
+        }
+
+        long size = 1;
+        place = new int[numTypes];
+        for (int i = 0; i < numTypes; i++) {
+            place[i] = (int) size;
+            size *= radix;
+            if (size > MAX_ENCODED_STATES) {
+                throw new IllegalArgumentException("Joint state space too large: " + numTypes
+                        + " item types with capacity " + capacity);
+            }
+        }
+        initStates((int) size);
+        initTransitions(transProbs);
+        values = new double[(int) size];
+        actionValues = new double[(int) size];
+        bestPost = new int[(int) size];
+        postDigits = new int[numTypes];
+        outcomeDigits = new int[numTypes];
+        remainderDigits = new int[numTypes];
+    }
+
+    /**
+     * Collects encoded states whose total stock does not exceed the capacity.
+     * @param size Number of encoded states
+     */
+    private void initStates(final int size) {
+        int count = 0;
+        for (int idx = 0; idx < size; idx++) {
+            if (totalStock(idx) <= capacity) {
+                count++;
+            }
+        }
+        validStates = new int[count];
+        int k = 0;
+        for (int idx = 0; idx < size; idx++) {
+            if (totalStock(idx) <= capacity) {
+                validStates[k++] = idx;
+            }
+        }
+    }
+
+    /**
+     * Precomputes the per item type expected rewards and remainder distributions.
+     * @param transProbs Transition matrix of every item type
+     */
+    private void initTransitions(final List<Matrix> transProbs) {
+        expectedRewards = new double[numTypes][radix];
+        remainderProbs = new double[numTypes][radix * radix];
+        for (int i = 0; i < numTypes; i++) {
+            Matrix m = transProbs.get(i);
+            for (int stock = 0; stock <= capacity; stock++) {
+                for (int wants = 0; wants <= capacity; wants++) {
+                    double p = m.get(stock, wants);
+                    int sold = Math.min(stock, wants);
+                    // Store keeps 75% of price of sold items and is fined 25% for items it failed to provide
+                    expectedRewards[i][stock] += p * (0.75 * prices[i] * sold - 0.25 * prices[i] * (wants - sold));
+                    remainderProbs[i][stock * radix + stock - sold] += p;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param idx Encoded state
+     * @param type Item type
+     * @return Stock level of the item type in the state
+     */
+    private int digit(final int idx, final int type) {
+        return idx / place[type] % radix;
+    }
+
+    /**
+     * @param idx Encoded state
+     * @return Total amount of items in the state
+     */
+    private int totalStock(final int idx) {
+        int sum = 0;
+        for (int i = 0; i < numTypes; i++) {
+            sum += digit(idx, i);
+        }
+        return sum;
+    }
+
+    /**
+     * @return Number of states whose stock fits into the storage space
+     */
+    public final int getStateCount() {
+        return validStates.length;
+    }
+
+    /**
+     * @return Number of sweeps performed by the last solve
+     */
+    public final long getSweepCount() {
+        return sweeps;
+    }
+
+    /**
+     * @return Number of state backups performed by the last solve
+     */
+    public final long getBackupCount() {
+        return sweeps * validStates.length;
+    }
+
+    /**
+     * @param solveListener Receives the progress of every following solve, or null for none
+     */
+    public final void setListener(final SolveListener solveListener) {
+        listener = solveListener;
+    }
+
+    /**
+     * @return Approximate number of bytes held by the arrays of the model and the solver
+     */
+    public final long getFootprintBytes() {
+        long bytes = 8L * (values.length + actionValues.length) + 4L * (bestPost.length + validStates.length);
+        for (int i = 0; i < numTypes; i++) {
+            bytes += 8L * (expectedRewards[i].length + remainderProbs[i].length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Value iteration over the expected utilities of post-action states.
+     * @param epsilon The maximum error allowed in the utility of any state
+     */
+    public final void solve(final double epsilon) {
+        double minDelta = epsilon * (1 - gamma) / gamma;
+        double[] next = new double[values.length];
+        double delta;
+        sweeps = 0;
+        do {
+            computeActionValues();
+            delta = 0;
+            for (int idx : validStates) {
+                double v = expectedReward(idx) + gamma * expectedActionValue(idx);
+                double aDiff = Math.abs(v - values[idx]);
+                if (aDiff > delta) {
+                    delta = aDiff;
+                }
+                next[idx] = v;
+            }
+            double[] tmp = values;
+            values = next;
+            next = tmp;
+            sweeps++;
+            if (listener != null) {
+                listener.sweepCompleted(sweeps, delta);
+            }
+        } while (delta > minDelta);
+        computeActionValues();
+    }
+
+    /**
+     * @param stockInventory Amount of items of each type in stock
+     * @return Recommended order of each item type, negative for returns; no change if the
+     *         stock does not fit into the storage space
+     */
+    public final List<Integer> getOrder(final List<Integer> stockInventory) {
+        List<Integer> order = new ArrayList<Integer>(numTypes);
+        int idx = 0;
+        int total = 0;
+        for (int i = 0; i < numTypes; i++) {
+            int stock = stockInventory.get(i);
+            if (stock < 0 || stock > capacity) {
+                total = capacity + 1;
+                break;
+            }
+            idx += stock * place[i];
+            total += stock;
+        }
+        for (int i = 0; i < numTypes; i++) {
+            order.add(total > capacity ? 0 : digit(bestPost[idx], i) - stockInventory.get(i));
+        }
+        return order;
+    }
+
+    /**
+     * @param idx Encoded post-action state
+     * @return Expected reward of the coming week
+     */
+    private double expectedReward(final int idx) {
+        double r = 0;
+        for (int i = 0; i < numTypes; i++) {
+            r += expectedRewards[i][digit(idx, i)];
+        }
+        return r;
+    }
+
+    /**
+     * Takes the expectation of the best action value over all remainder states, walking them
+     * like an odometer so the probability of every outcome is a product of per type factors.
+     * @param idx Encoded post-action state
+     * @return Expected best action value after customer consumption
+     */
+    private double expectedActionValue(final int idx) {
+        for (int i = 0; i < numTypes; i++) {
+            postDigits[i] = digit(idx, i);
+            outcomeDigits[i] = 0;
+        }
+        int outcome = 0;
+        double sum = 0;
+        while (true) {
+            double p = 1;
+            for (int i = 0; i < numTypes && p > 0; i++) {
+                p *= remainderProbs[i][postDigits[i] * radix + outcomeDigits[i]];
+            }
+            if (p > 0) {
+                sum += p * actionValues[outcome];
+            }
+            int i = 0;
+            while (i < numTypes) {
+                if (outcomeDigits[i] < postDigits[i]) {
+                    outcomeDigits[i]++;
+                    outcome += place[i];
+                    break;
+                }
+                outcome -= outcomeDigits[i] * place[i];
+                outcomeDigits[i] = 0;
+                i++;
+            }
+            if (i == numTypes) {
+                return sum;
+            }
+        }
+    }
+
+    /**
+     * Finds the best action from every remainder state for the current utilities.
+     */
+    private void computeActionValues() {
+        for (int idx : validStates) {
+            for (int i = 0; i < numTypes; i++) {
+                remainderDigits[i] = digit(idx, i);
+            }
+            searchBest = Double.NEGATIVE_INFINITY;
+            searchBestPost = idx;
+            searchActions(0, 0, 0, 0, 0, 0);
+            actionValues[idx] = searchBest;
+            bestPost[idx] = searchBestPost;
+        }
+    }
+
+    /**
+     * Enumerates joint actions depth first, one item type per level, without materializing them.
+     * @param type Item type whose change is chosen at this level
+     * @param post Encoded post-action stock of the item types chosen so far
+     * @param ordered Items ordered so far
+     * @param returned Items returned so far
+     * @param total Post-action stock of the item types chosen so far
+     * @param cost Return fees of the item types chosen so far
+     */
+    private void searchActions(final int type, final int post, final int ordered, final int returned,
+            final int total, final double cost) {
+        if (type == numTypes) {
+            double v = values[post] - cost;
+            if (v > searchBest) {
+                searchBest = v;
+                searchBestPost = post;
+            }
+            return;
+        }
+        int r = remainderDigits[type];
+        int minChng = -Math.min(r, maxReturns - returned);
+        int maxChng = Math.min(maxOrder - ordered, capacity - total - r);
+        for (int chng = minChng; chng <= maxChng; chng++) {
+            searchActions(type + 1, post + (r + chng) * place[type],
+                    ordered + Math.max(chng, 0), returned + Math.max(-chng, 0), total + r + chng,
+                    // Store pays 50% of price of items it returns
+                    cost + (chng < 0 ? -0.5 * prices[type] * chng : 0));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package solver;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -8,6 +11,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import problem.Matrix;
 
@@ -33,6 +45,78 @@ public class MDP {
     private Matrix probabilities;
     /** States of the process. */
     private Set<State> states;
+    /** Number of distinct customer wants levels, i.e. capacity + 1. */
+    private int wantsLevels;
+    /** Number of states in the dense index space. */
+    private int numStates;
+    /** Reward for ending up in each state, by dense state index. */
+    private double[] rewards;
+    /** States of the process, by dense state index. */
+    private State[] indexedStates;
+    /**
+     * Offsets into successorStates and successorProbs for each post-action stock level;
+     * successors of stock level k are stored at [successorStart[k], successorStart[k + 1]).
+     */
+    private int[] successorStart;
+    /** Dense indices of states reachable with nonzero probability. */
+    private int[] successorStates;
+    /** Probabilities of reaching the corresponding entry of successorStates. */
+    private double[] successorProbs;
+    /** Stock left after customer consumption, by dense state index. */
+    private int[] remainders;
+    /** Probability of ending up in each state from the post-action stock level equal to its stock. */
+    private double[] arrivalProbs;
+    /** Smallest change in stock available, by remainder. */
+    private int[] minChanges;
+    /** Largest change in stock available, by remainder. */
+    private int[] maxChanges;
+    /**
+     * Offsets into remainderStates for each remainder;
+     * states with remainder r are stored at [remainderStart[r], remainderStart[r + 1]).
+     */
+    private int[] remainderStart;
+    /** Dense indices of states, grouped by remainder. */
+    private int[] remainderStates;
+    /** Update schedule used by the dense engine. */
+    private UpdateSchedule schedule = UpdateSchedule.JACOBI;
+    /** Number of threads used by the parallel Jacobi schedule. */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /** Number of sweeps performed by the last solve. */
+    private long sweeps;
+    /** Number of state backups performed by the last solve. */
+    private long backups;
+    /** Receives the progress of solves, or null. */
+    private SolveListener listener;
+    /** Tests and budgets ending the dense engine besides the residual test. */
+    private StoppingRule stoppingRule = StoppingRule.RESIDUAL_ONLY;
+    /** Criterion which ended the last run of the dense engine, or null. */
+    private StopReason stopReason;
+    /** Certified bound on the policy loss of the last run of the dense engine, or NaN. */
+    private double lossBound = Double.NaN;
+    /** Value of System.nanoTime() when the current run of the dense engine started. */
+    private long solveStart;
+    /** Number of sweeps in a row without a change in the greedy policy. */
+    private int stableCount;
+    /**
+     * Offsets from the utilities of the last sweep to the upper and lower bound on the optimal
+     * utilities, or NaN if the schedule does not compute them.
+     */
+    private double upperOffset = Double.NaN;
+    private double lowerOffset = Double.NaN;
+    /** Whether the Jacobi schedule drops actions its bounds show to be suboptimal. */
+    private boolean actionElimination;
+    /** Number of action values compared by the last run of the dense engine. */
+    private long actionEvaluations;
+    /** Total probability of the successors of every post-action stock level, zero above stockPart. */
+    private double[] successorMass;
+    /** Relative margin by which an action's upper bound must fall short to be dropped, against rounding. */
+    private static final double ELIMINATION_MARGIN = 1e-9;
+    /** Utilities the next dense solve starts from, or null to start from zero. */
+    private double[] initialUtilities;
+    /** Utilities of states found by the last dense solve, or null if it computed none. */
+    private double[] utilities;
+    /** Marker for states which have no recommended action yet. */
+    private static final int NO_ACTION = Integer.MIN_VALUE;
     
     /**
      * @param storageSpace Max number of items the store can stock
@@ -56,6 +140,92 @@ public class MDP {
         probabilities = transProbs;
         
         states = initStates();
+        initDenseModel();
+    }
+    
+    /**
+     * Builds the primitive array representation of the process used by the dense engine.
+     * States are indexed as stock * (capacity + 1) + wants.
+     */
+    private void initDenseModel() {
+        wantsLevels = capacity + 1;
+        numStates = (stockPart + 1) * wantsLevels;
+        rewards = new double[numStates];
+        indexedStates = new State[numStates];
+        remainders = new int[numStates];
+        arrivalProbs = new double[numStates];
+        Action noAct = new Action(0);
+        for (State s : states) {
+            int idx = stateIndex(s.getInitialStock(), s.getCustomerWants());
+            indexedStates[idx] = s;
+            rewards[idx] = getReward(noAct, s);
+            int remainder = s.getInitialStock() - s.getCustomerWants();
+            remainders[idx] = remainder < 0 ? 0 : remainder;
+            arrivalProbs[idx] = probabilities.get(s.getInitialStock(), s.getCustomerWants());
+        }
+        minChanges = new int[stockPart + 1];
+        maxChanges = new int[stockPart + 1];
+        for (int r = 0; r <= stockPart; r++) {
+            // Same bounds as in getActions
+            minChanges[r] = -Math.min(r, maxReturns);
+            maxChanges[r] = Math.min(maxOrder, capacity - r);
+        }
+        remainderStart = new int[stockPart + 2];
+        for (int idx = 0; idx < numStates; idx++) {
+            remainderStart[remainders[idx] + 1]++;
+        }
+        for (int r = 0; r <= stockPart; r++) {
+            remainderStart[r + 1] += remainderStart[r];
+        }
+        remainderStates = new int[numStates];
+        int[] fill = Arrays.copyOf(remainderStart, stockPart + 1);
+        for (int idx = 0; idx < numStates; idx++) {
+            remainderStates[fill[remainders[idx]]++] = idx;
+        }
+        initSuccessors();
+    }
+    
+    /**
+     * Precomputes, for every post-action stock level, the states reachable from it.
+     * After an action the stock is fixed to remainder + change, so only the customer wants vary
+     * and at most capacity + 1 successors have nonzero probability.
+     */
+    private void initSuccessors() {
+        int count = 0;
+        for (int stock = 0; stock <= stockPart; stock++) {
+            for (int wants = 0; wants <= capacity; wants++) {
+                if (probabilities.get(stock, wants) > 0) {
+                    count++;
+                }
+            }
+        }
+        successorStart = new int[stockPart + 2];
+        successorStates = new int[count];
+        successorProbs = new double[count];
+        successorMass = new double[capacity + 1];
+        int k = 0;
+        for (int stock = 0; stock <= stockPart; stock++) {
+            successorStart[stock] = k;
+            for (int wants = 0; wants <= capacity; wants++) {
+                double p = probabilities.get(stock, wants);
+                if (p > 0) {
+                    successorStates[k] = stateIndex(stock, wants);
+                    successorProbs[k] = p;
+                    successorMass[stock] += p;
+                    k++;
+                }
+            }
+        }
+        successorStart[stockPart + 1] = k;
+    }
+    
+    /**
+     * @param stock Amount of items in stock on Monday
+     * @param wants Amount of items requested by customers during a week
+     * @return Index of the state in dense utility vectors
+     */
+    private int stateIndex(final int stock, final int wants) {
+        return stock * wantsLevels + wants;
     }
     
     /**
@@ -93,21 +263,6 @@ public class MDP {
         return acts;
     }
     
-    /**
-     * @param s Initial state
-     * @param a Action performed by agent
-     * @param s1 Target state
-     * @return Probability of transition
-     */
-    private double getProbability(final State s, final Action a, final State s1) {
-        int remainder = s.getInitialStock() - s.getCustomerWants();
-        remainder = remainder < 0 ? 0 : remainder;
-        if (remainder + a.getChange() != s1.getInitialStock()) {
-            return 0;
-        }
-        return probabilities.get(remainder + a.getChange(), s1.getCustomerWants());
-    }
-    
     /**
      * @param a Performed action
      * @param s1 Target state
@@ -146,6 +301,8 @@ public class MDP {
         double delta = 0;
         double minDelta = epsilon * (1 - gamma) / gamma;
         Action noAct = new Action(0);
+        sweeps = 0;
+        backups = 0;
         
         do {
             u.putAll(uDelta);
@@ -154,11 +311,17 @@ public class MDP {
             for (State s : states) {
                 // Calculating utility of a state
                 Set<Action> actions = getActions(s);
+                int remainder = s.getInitialStock() - s.getCustomerWants();
+                remainder = remainder < 0 ? 0 : remainder;
                 double aMax = 0;
                 for (Action a : actions) {
                     double aSum = 0;
-                    for (State sDelta : states) {
-                        aSum += getProbability(s, a, sDelta) * u.get(sDelta);
+                    // Only states with stock of remainder + change can be reached
+                    int next = remainder + a.getChange();
+                    if (next <= stockPart) {
+                        for (int k = successorStart[next]; k < successorStart[next + 1]; k++) {
+                            aSum += successorProbs[k] * u.get(indexedStates[successorStates[k]]);
+                        }
                     }
                     if (aSum > aMax) {
                         aMax = aSum;
@@ -172,6 +335,9 @@ public class MDP {
                     delta = aDiff;
                 }
             }
+            sweeps++;
+            backups += states.size();
+            sweepCompleted(delta);
             // until delta < &epsilon(1 - gamma)/gamma
         } while (delta > minDelta);
         Map<State, Action> sortedPolicy = new TreeMap<State, Action>(optimalActions);
@@ -185,6 +351,1002 @@ public class MDP {
         return policy;
     }
 
+    /**
+     * @param updateSchedule Order in which the dense engine updates utilities of states
+     */
+    public final void setSchedule(final UpdateSchedule updateSchedule) {
+        schedule = updateSchedule;
+    }
+    
+    /**
+     * @param threads Number of threads used by the parallel Jacobi schedule
+     */
+    public final void setParallelism(final int threads) {
+        parallelism = threads;
+    }
+    
+    /**
+     * @param rule Tests and budgets ending the following runs of the dense engine
+     *        besides the residual test
+     */
+    public final void setStoppingRule(final StoppingRule rule) {
+        stoppingRule = rule;
+    }
+    
+    /**
+     * @return Criterion which ended the last solve, or null if nothing was solved yet or the
+     *         last solve was a finite horizon policy
+     */
+    public final StopReason getStopReason() {
+        return stopReason;
+    }
+    
+    /**
+     * Records that the policy of the process was taken from the policy cache instead of solved.
+     */
+    final void markCached() {
+        sweeps = 0;
+        backups = 0;
+        stopReason = StopReason.CACHED;
+        lossBound = Double.NaN;
+    }
+    
+    /**
+     * The Jacobi schedules bound the optimal utilities from the changes d = u' - u of the last
+     * sweep, following MacQueen: u* <= u' + gamma / (1 - gamma) * max(max d, 0) and
+     * u* >= v >= u' + gamma / (1 - gamma) * min d for the value v of the greedy policy. Keeping
+     * the stock as it is adds no discounted future value, so the lower bound is clipped to
+     * min(min d, 0) if that is the best choice of some state.
+     * @return Bound on how much less the greedy policy found by the last run of the dense engine
+     *         earns than an optimal one from any state, or NaN if the schedule does not certify one
+     */
+    public final double getLossBound() {
+        return lossBound;
+    }
+    
+    /**
+     * Action elimination: after every sweep of the Jacobi schedule, actions whose upper bound on
+     * the expected utility of the next state is below the best lower bound of another action, or
+     * below zero, are dropped for good, since they cannot be optimal. The bounds are the ones of
+     * {@link #getLossBound()}. Optimal actions are never dropped, so the utilities converge to
+     * the same fixed point with fewer action values compared per backup. Actions are kept as
+     * bitsets per remainder, since all states with the same remainder have the same actions.
+     * @param eliminate Whether the Jacobi schedule drops provably suboptimal actions
+     */
+    public final void setActionElimination(final boolean eliminate) {
+        actionElimination = eliminate;
+    }
+    
+    /**
+     * @return Number of action values compared by the last run of the dense engine
+     *         with the Jacobi schedule, zero for the other schedules
+     */
+    public final long getActionEvaluationCount() {
+        return actionEvaluations;
+    }
+    
+    /**
+     * @param solveListener Receives the progress of every following solve, or null for none
+     */
+    public final void setListener(final SolveListener solveListener) {
+        listener = solveListener;
+    }
+    
+    /**
+     * @return Number of sweeps performed by the last solve; for prioritized sweeping,
+     *         the number of updates divided by the number of states, rounded up
+     */
+    public final long getSweepCount() {
+        return sweeps;
+    }
+    
+    /**
+     * @return Number of state backups performed by the last solve
+     */
+    public final long getBackupCount() {
+        return backups;
+    }
+    
+    /**
+     * @return Price of items of the type
+     */
+    public final double getItemPrice() {
+        return itemPrice;
+    }
+    
+    /**
+     * @return Discount factor
+     */
+    public final double getDiscount() {
+        return gamma;
+    }
+    
+    /**
+     * Sets the utilities the next run of the dense value iteration engine or of modified policy
+     * iteration starts from instead of zero, e.g. the utilities of a similar solved process.
+     * The stopping criterion bounds the error from any start, but the utilities it stops at
+     * depend on the start, so the greedy policy may be a different epsilon-optimal one than the
+     * policy found from zero.
+     * @param u Utility of every state by dense state index, or null to start from zero
+     */
+    public final void setInitialUtilities(final double[] u) {
+        if (u != null && u.length != numStates) {
+            throw new IllegalArgumentException("Expected " + numStates + " utilities, got " + u.length);
+        }
+        initialUtilities = u == null ? null : u.clone();
+    }
+    
+    /**
+     * @return Utility of every state by dense state index found by the last run of the dense engine,
+     *         policy iteration or modified policy iteration, or null if none of them has run
+     */
+    public final double[] getUtilities() {
+        return utilities == null ? null : utilities.clone();
+    }
+    
+    /**
+     * Feeds everything the solution depends on into a digest.
+     * @param md The digest
+     * @param economics Whether to include the item price and discount factor
+     */
+    final void digestInputs(final MessageDigest md, final boolean economics) {
+        ByteBuffer buf = ByteBuffer.allocate(8 * (wantsLevels + 5));
+        buf.putInt(capacity).putInt(stockPart).putInt(maxOrder).putInt(maxReturns);
+        buf.putDouble(returnFee);
+        if (economics) {
+            buf.putDouble(itemPrice).putDouble(gamma);
+        }
+        buf.flip();
+        md.update(buf);
+        for (int stock = 0; stock <= capacity; stock++) {
+            buf.clear();
+            for (int wants = 0; wants <= capacity; wants++) {
+                buf.putDouble(probabilities.get(stock, wants));
+            }
+            buf.flip();
+            md.update(buf);
+        }
+    }
+    
+    /**
+     * Reports a completed sweep to the listener, if any.
+     * @param residual Largest change in utility in the sweep, or NaN if it was not computed
+     */
+    private void sweepCompleted(final double residual) {
+        if (listener != null) {
+            listener.sweepCompleted(sweeps, residual);
+        }
+    }
+    
+    /**
+     * Decides whether the dense engine stops after a sweep and records why.
+     * @param delta Largest absolute change in utility of any state in the sweep
+     * @param maxDiff Largest change in utility in the sweep, or NaN if the schedule does not track it
+     * @param minDiff Smallest change in utility in the sweep, or NaN
+     * @param floored Whether keeping the stock was the best choice of some state
+     * @param policyChanged Whether the greedy action of some state changed in the sweep,
+     *        or null if the schedule does not track it
+     * @param minDelta Largest change in utility at which iteration stops
+     * @return True iff the engine stops
+     */
+    private boolean stopAfterSweep(final double delta, final double maxDiff, final double minDiff,
+            final boolean floored, final Boolean policyChanged, final double minDelta) {
+        double spread = Double.NaN;
+        if (!Double.isNaN(maxDiff)) {
+            spread = Math.max(maxDiff, 0) - (floored ? Math.min(minDiff, 0) : minDiff);
+            lossBound = gamma / (1 - gamma) * spread;
+            upperOffset = gamma / (1 - gamma) * Math.max(maxDiff, 0);
+            lowerOffset = upperOffset - lossBound;
+        }
+        if (policyChanged != null) {
+            stableCount = policyChanged ? 0 : stableCount + 1;
+        }
+        if (delta <= minDelta) {
+            stopReason = StopReason.RESIDUAL;
+        } else if (stoppingRule.isSpan() && spread <= minDelta) {
+            stopReason = StopReason.SPAN;
+        } else if (stoppingRule.getStableSweeps() > 0 && stableCount >= stoppingRule.getStableSweeps()) {
+            stopReason = StopReason.POLICY_STABLE;
+        } else {
+            stopReason = stoppingRule.budgetExhausted(sweeps, solveStart);
+        }
+        return stopReason != null;
+    }
+    
+    /**
+     * @return Copy of the initial utilities, or zeros
+     */
+    private double[] startUtilities() {
+        return initialUtilities == null ? new double[numStates] : initialUtilities.clone();
+    }
+    
+    /**
+     * The value iteration algorithm over primitive arrays. States are addressed by their dense index
+     * and actions by their change in stock, so no objects are created while sweeping.
+     * Produces the same policy as {@link #valueIteration(double)}. Stops on the residual test,
+     * or earlier on the tests and budgets of the stopping rule, see {@link #getStopReason()}.
+     * @param epsilon The maximum error allowed in the utility of any state
+     * @return Mapping of stock amounts to recommended actions
+     */
+    public final Map<Integer, Integer> denseValueIteration(final double epsilon) {
+        sweeps = 0;
+        backups = 0;
+        stopReason = null;
+        lossBound = Double.NaN;
+        upperOffset = Double.NaN;
+        lowerOffset = Double.NaN;
+        actionEvaluations = 0;
+        stableCount = 0;
+        solveStart = System.nanoTime();
+        double minDelta = epsilon * (1 - gamma) / gamma;
+        switch (schedule) {
+            case GAUSS_SEIDEL:
+                return gaussSeidelIteration(minDelta);
+            case PRIORITIZED:
+                return prioritizedSweeping(minDelta);
+            case PARALLEL_JACOBI:
+                return new ParallelSweep(Math.max(1, Math.min(parallelism, numStates)), minDelta).solve();
+            default:
+                return jacobiIteration(minDelta);
+        }
+    }
+    
+    /**
+     * Value iteration computing each sweep from the utilities of the previous one.
+     * @param minDelta Largest change in utility at which iteration stops
+     * @return Mapping of stock amounts to recommended actions
+     */
+    private Map<Integer, Integer> jacobiIteration(final double minDelta) {
+        double[] u = new double[numStates];
+        // Swapped into u before the first sweep
+        double[] uDelta = startUtilities();
+        // Expected utility of the next state, by post-action stock level
+        double[] postValues = new double[capacity + 1];
+        int[] optimalActions = new int[numStates];
+        Arrays.fill(optimalActions, NO_ACTION);
+        double delta = 0;
+        double maxDiff;
+        double minDiff;
+        boolean floored;
+        boolean policyChanged;
+        int words = (maxOrder + maxReturns + 64) >>> 6;
+        long[] candidates = actionElimination ? initCandidates(words) : null;
+        
+        do {
+            double[] tmp = u;
+            u = uDelta;
+            uDelta = tmp;
+            delta = 0;
+            maxDiff = Double.NEGATIVE_INFINITY;
+            minDiff = Double.POSITIVE_INFINITY;
+            floored = false;
+            policyChanged = false;
+            computePostValues(u, postValues);
+            if (candidates != null && !Double.isNaN(upperOffset)) {
+                eliminateActions(candidates, words, postValues);
+            }
+            for (int s = 0; s < numStates; s++) {
+                int remainder = remainders[s];
+                double aMax = 0;
+                int best = optimalActions[s];
+                if (candidates == null) {
+                    for (int chng = minChanges[remainder]; chng <= maxChanges[remainder]; chng++) {
+                        double aSum = postValues[remainder + chng];
+                        if (aSum > aMax) {
+                            aMax = aSum;
+                            best = chng;
+                        }
+                    }
+                    actionEvaluations += maxChanges[remainder] - minChanges[remainder] + 1;
+                } else {
+                    // Candidates in increasing order of change, so ties go to the same action
+                    for (int w = 0; w < words; w++) {
+                        long bits = candidates[remainder * words + w];
+                        while (bits != 0) {
+                            int chng = minChanges[remainder] + (w << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            double aSum = postValues[remainder + chng];
+                            if (aSum > aMax) {
+                                aMax = aSum;
+                                best = chng;
+                            }
+                            actionEvaluations++;
+                        }
+                    }
+                }
+                if (aMax == 0) {
+                    floored = true;
+                }
+                if (best != optimalActions[s]) {
+                    optimalActions[s] = best;
+                    policyChanged = true;
+                }
+                uDelta[s] = rewards[s] + gamma * aMax;
+                double diff = uDelta[s] - u[s];
+                maxDiff = Math.max(maxDiff, diff);
+                minDiff = Math.min(minDiff, diff);
+                double aDiff = Math.abs(diff);
+                if (aDiff > delta) {
+                    delta = aDiff;
+                }
+            }
+            sweeps++;
+            backups += numStates;
+            sweepCompleted(delta);
+        } while (!stopAfterSweep(delta, maxDiff, minDiff, floored, policyChanged, minDelta));
+        utilities = uDelta;
+        return extractPolicy(optimalActions);
+    }
+    
+    /**
+     * @param words Number of 64 bit words per remainder
+     * @return Bitsets of the available changes in stock of every remainder, bit j of a remainder's
+     *         words standing for the change minChanges[remainder] + j
+     */
+    private long[] initCandidates(final int words) {
+        long[] candidates = new long[(stockPart + 1) * words];
+        for (int r = 0; r <= stockPart; r++) {
+            int count = maxChanges[r] - minChanges[r] + 1;
+            for (int j = 0; j < count; j++) {
+                candidates[r * words + (j >>> 6)] |= 1L << j;
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * Drops the candidate actions which cannot be optimal by the bounds of the last sweep.
+     * @param candidates Bitsets of the remaining changes in stock of every remainder
+     * @param words Number of 64 bit words per remainder
+     * @param postValues Expected utilities by post-action stock level, from the utilities
+     *        of the last sweep
+     */
+    private void eliminateActions(final long[] candidates, final int words, final double[] postValues) {
+        for (int r = 0; r <= stockPart; r++) {
+            int base = r * words;
+            // Keeping the stock without an action is worth zero, so nothing worse is optimal
+            double lowerMax = 0;
+            for (int w = 0; w < words; w++) {
+                long bits = candidates[base + w];
+                while (bits != 0) {
+                    int next = r + minChanges[r] + (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    lowerMax = Math.max(lowerMax, postValues[next] + lowerOffset * successorMass[next]);
+                }
+            }
+            double threshold = lowerMax - ELIMINATION_MARGIN * (1 + Math.abs(lowerMax));
+            for (int w = 0; w < words; w++) {
+                long bits = candidates[base + w];
+                while (bits != 0) {
+                    int j = Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int next = r + minChanges[r] + (w << 6) + j;
+                    if (postValues[next] + upperOffset * successorMass[next] < threshold) {
+                        candidates[base + w] &= ~(1L << j);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Jacobi value iteration with the dense index range split into one block of states and
+     * one block of post-action stock levels per thread. Every sweep has two phases separated
+     * by barriers: the expected utilities of the post-action stock levels are computed from the
+     * current buffer, then states are backed up into the other buffer. The maximum change of
+     * each block is combined when the last thread reaches the end of the sweep, and the buffers
+     * are swapped there.
+     */
+    private class ParallelSweep {
+        /** Number of worker threads. */
+        private final int threads;
+        /** Largest change in utility at which iteration stops. */
+        private final double minDelta;
+        /** Utility vectors; the current one is read and the other one written in a sweep. */
+        private final double[][] buffers = new double[2][numStates];
+        /** Expected utility of the next state, by post-action stock level. */
+        private final double[] postValues = new double[capacity + 1];
+        /** Recommended change in stock, by dense state index. */
+        private final int[] optimalActions = new int[numStates];
+        /** Largest change in utility within each block in the current sweep. */
+        private final double[] blockDelta;
+        /** Largest signed change in utility within each block in the current sweep. */
+        private final double[] blockMax;
+        /** Smallest signed change in utility within each block in the current sweep. */
+        private final double[] blockMin;
+        /** Whether keeping the stock was the best choice of some state of each block. */
+        private final boolean[] blockFloored;
+        /** Whether the greedy action of some state of each block changed. */
+        private final boolean[] blockChanged;
+        /** Waits for all post-action expected utilities of a sweep. */
+        private final CyclicBarrier postBarrier;
+        /** Waits for all backups of a sweep, then reduces the change and swaps buffers. */
+        private final CyclicBarrier sweepBarrier;
+        /** Index of the buffer holding the current utilities. */
+        private int current = 0;
+        /** True once the change in utility is small enough. */
+        private boolean done = false;
+        /** First exception or error thrown by a worker or the barrier action, or null. */
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        
+        /**
+         * @param threadCount Number of worker threads
+         * @param maxDelta Largest change in utility at which iteration stops
+         */
+        ParallelSweep(final int threadCount, final double maxDelta) {
+            threads = threadCount;
+            minDelta = maxDelta;
+            blockDelta = new double[threads];
+            blockMax = new double[threads];
+            blockMin = new double[threads];
+            blockFloored = new boolean[threads];
+            blockChanged = new boolean[threads];
+            Arrays.fill(optimalActions, NO_ACTION);
+            buffers[0] = startUtilities();
+            postBarrier = new CyclicBarrier(threads);
+            sweepBarrier = new CyclicBarrier(threads, new Runnable() {
+                @Override
+                public void run() {
+                    double delta = 0;
+                    double maxDiff = Double.NEGATIVE_INFINITY;
+                    double minDiff = Double.POSITIVE_INFINITY;
+                    boolean floored = false;
+                    boolean changed = false;
+                    for (int t = 0; t < threads; t++) {
+                        delta = Math.max(delta, blockDelta[t]);
+                        maxDiff = Math.max(maxDiff, blockMax[t]);
+                        minDiff = Math.min(minDiff, blockMin[t]);
+                        floored |= blockFloored[t];
+                        changed |= blockChanged[t];
+                    }
+                    sweeps++;
+                    backups += numStates;
+                    sweepCompleted(delta);
+                    current = 1 - current;
+                    done = stopAfterSweep(delta, maxDiff, minDiff, floored, changed, minDelta);
+                }
+            });
+        }
+        
+        /**
+         * @return Mapping of stock amounts to recommended actions
+         */
+        Map<Integer, Integer> solve() {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                CompletionService<Void> workers = new ExecutorCompletionService<Void>(pool);
+                for (int t = 0; t < threads; t++) {
+                    final int block = t;
+                    workers.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws InterruptedException, BrokenBarrierException {
+                            work(block);
+                            return null;
+                        }
+                    });
+                }
+                // Wait in completion order, so the first failure interrupts the other workers
+                // through shutdownNow even if they are still waiting at a barrier
+                for (int t = 0; t < threads; t++) {
+                    workers.take().get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Value iteration interrupted", e);
+            } catch (ExecutionException e) {
+                // The other workers only see the broken barriers, so report what broke them
+                Throwable cause = failure.get();
+                throw new IllegalStateException("Value iteration failed", cause != null ? cause : e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            utilities = buffers[current];
+            return extractPolicy(optimalActions);
+        }
+        
+        /**
+         * Sweeps the block of a single thread until the iteration converges. If the thread fails,
+         * the failure is recorded so solve() can report it rather than the broken barriers or
+         * interrupts the other threads see.
+         * @param block Index of the block
+         * @throws InterruptedException If the thread is interrupted while waiting for the others
+         * @throws BrokenBarrierException If another thread failed
+         */
+        private void work(final int block) throws InterruptedException, BrokenBarrierException {
+            try {
+                sweepBlock(block);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } catch (Error e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            }
+        }
+        
+        /**
+         * @param block Index of the block
+         * @throws InterruptedException If the thread is interrupted while waiting for the others
+         * @throws BrokenBarrierException If another thread failed
+         */
+        private void sweepBlock(final int block) throws InterruptedException, BrokenBarrierException {
+            int levels = stockPart + 1;
+            int postLow = (int) ((long) levels * block / threads);
+            int postHigh = (int) ((long) levels * (block + 1) / threads);
+            int low = (int) ((long) numStates * block / threads);
+            int high = (int) ((long) numStates * (block + 1) / threads);
+            do {
+                double[] u = buffers[current];
+                double[] uDelta = buffers[1 - current];
+                for (int next = postLow; next < postHigh; next++) {
+                    double sum = 0;
+                    for (int k = successorStart[next]; k < successorStart[next + 1]; k++) {
+                        sum += successorProbs[k] * u[successorStates[k]];
+                    }
+                    postValues[next] = sum;
+                }
+                postBarrier.await();
+                double delta = 0;
+                double maxDiff = Double.NEGATIVE_INFINITY;
+                double minDiff = Double.POSITIVE_INFINITY;
+                boolean floored = false;
+                boolean changed = false;
+                for (int s = low; s < high; s++) {
+                    int remainder = remainders[s];
+                    double aMax = 0;
+                    int best = optimalActions[s];
+                    for (int chng = minChanges[remainder]; chng <= maxChanges[remainder]; chng++) {
+                        double aSum = postValues[remainder + chng];
+                        if (aSum > aMax) {
+                            aMax = aSum;
+                            best = chng;
+                        }
+                    }
+                    if (aMax == 0) {
+                        floored = true;
+                    }
+                    if (best != optimalActions[s]) {
+                        optimalActions[s] = best;
+                        changed = true;
+                    }
+                    uDelta[s] = rewards[s] + gamma * aMax;
+                    double diff = uDelta[s] - u[s];
+                    maxDiff = Math.max(maxDiff, diff);
+                    minDiff = Math.min(minDiff, diff);
+                    double aDiff = Math.abs(diff);
+                    if (aDiff > delta) {
+                        delta = aDiff;
+                    }
+                }
+                blockDelta[block] = delta;
+                blockMax[block] = maxDiff;
+                blockMin[block] = minDiff;
+                blockFloored[block] = floored;
+                blockChanged[block] = changed;
+                sweepBarrier.await();
+            } while (!done);
+        }
+    }
+    
+    /**
+     * Value iteration updating utilities in place. The cached expected utilities are adjusted
+     * after every update, so the following backups in the same sweep already use the new value.
+     * @param minDelta Largest change in utility at which iteration stops
+     * @return Mapping of stock amounts to recommended actions
+     */
+    private Map<Integer, Integer> gaussSeidelIteration(final double minDelta) {
+        double[] u = startUtilities();
+        double[] postValues = new double[capacity + 1];
+        int[] optimalActions = new int[numStates];
+        Arrays.fill(optimalActions, NO_ACTION);
+        double delta = 0;
+        boolean policyChanged;
+        
+        do {
+            delta = 0;
+            policyChanged = false;
+            // Recomputed every sweep so rounding errors of the incremental updates do not build up
+            computePostValues(u, postValues);
+            for (int s = 0; s < numStates; s++) {
+                int remainder = remainders[s];
+                double aMax = 0;
+                int best = optimalActions[s];
+                for (int chng = minChanges[remainder]; chng <= maxChanges[remainder]; chng++) {
+                    double aSum = postValues[remainder + chng];
+                    if (aSum > aMax) {
+                        aMax = aSum;
+                        best = chng;
+                    }
+                }
+                if (best != optimalActions[s]) {
+                    optimalActions[s] = best;
+                    policyChanged = true;
+                }
+                double aDiff = rewards[s] + gamma * aMax - u[s];
+                u[s] += aDiff;
+                postValues[s / wantsLevels] += arrivalProbs[s] * aDiff;
+                aDiff = Math.abs(aDiff);
+                if (aDiff > delta) {
+                    delta = aDiff;
+                }
+            }
+            sweeps++;
+            backups += numStates;
+            sweepCompleted(delta);
+        } while (!stopAfterSweep(delta, Double.NaN, Double.NaN, false, policyChanged, minDelta));
+        utilities = u;
+        return extractPolicy(optimalActions);
+    }
+    
+    /**
+     * Prioritized sweeping: repeatedly updates the state with the largest Bellman residual,
+     * then refreshes the residuals of the states whose actions can reach the updated stock level.
+     * Every numStates updates count as a sweep.
+     * @param minDelta Largest Bellman residual at which iteration stops
+     * @return Mapping of stock amounts to recommended actions
+     */
+    private Map<Integer, Integer> prioritizedSweeping(final double minDelta) {
+        double[] u = startUtilities();
+        double[] postValues = new double[capacity + 1];
+        computePostValues(u, postValues);
+        double[] remainderMax = new double[stockPart + 1];
+        ResidualQueue queue = new ResidualQueue(numStates);
+        long updates = 0;
+        // Largest change in utility since the last reported sweep
+        double blockDelta = 0;
+        
+        for (int r = 0; r <= stockPart; r++) {
+            remainderMax[r] = maxPostValue(r, postValues);
+            for (int k = remainderStart[r]; k < remainderStart[r + 1]; k++) {
+                int s = remainderStates[k];
+                queue.update(s, Math.abs(rewards[s] + gamma * remainderMax[r] - u[s]));
+                backups++;
+            }
+        }
+        while (queue.peekKey() > minDelta) {
+            int s = queue.peek();
+            double aDiff = rewards[s] + gamma * remainderMax[remainders[s]] - u[s];
+            u[s] += aDiff;
+            queue.update(s, 0);
+            updates++;
+            blockDelta = Math.max(blockDelta, Math.abs(aDiff));
+            int stock = s / wantsLevels;
+            postValues[stock] += arrivalProbs[s] * aDiff;
+            // Remainders from which some action leads to the updated stock level
+            int low = Math.max(0, stock - maxOrder);
+            int high = Math.min(stockPart, stock + maxReturns);
+            for (int r = low; r <= high; r++) {
+                if (stock - r < minChanges[r] || stock - r > maxChanges[r]) {
+                    continue;
+                }
+                remainderMax[r] = maxPostValue(r, postValues);
+                for (int k = remainderStart[r]; k < remainderStart[r + 1]; k++) {
+                    int p = remainderStates[k];
+                    queue.update(p, Math.abs(rewards[p] + gamma * remainderMax[r] - u[p]));
+                    backups++;
+                }
+            }
+            if (updates % numStates == 0) {
+                sweeps = updates / numStates;
+                sweepCompleted(blockDelta);
+                blockDelta = 0;
+                stopReason = stoppingRule.budgetExhausted(sweeps, solveStart);
+                if (stopReason != null) {
+                    break;
+                }
+            }
+        }
+        if (updates % numStates != 0) {
+            sweeps = updates / numStates + 1;
+            sweepCompleted(blockDelta);
+        }
+        if (stopReason == null) {
+            stopReason = StopReason.RESIDUAL;
+        }
+        utilities = u;
+        
+        computePostValues(u, postValues);
+        int[] optimalActions = new int[numStates];
+        for (int s = 0; s < numStates; s++) {
+            optimalActions[s] = bestAction(remainders[s], postValues);
+        }
+        return extractPolicy(optimalActions);
+    }
+    
+    /**
+     * Backward induction over a finite number of weeks. The value of a state with m weeks left after
+     * the current one is its reward plus the discounted best expected value with m - 1 weeks left,
+     * and with no weeks left the agent cannot influence anything, so the table recommends no change.
+     * The stages are built in a single pass that overwrites one utility vector in place.
+     * @param numWeeks Number of weeks the store is evaluated for
+     * @return Recommended change in stock with w weeks left after the current one and stock level s,
+     *         at index w * (stockPart + 1) + s
+     */
+    public final int[] finiteHorizonPolicy(final int numWeeks) {
+        utilities = null;
+        stopReason = null;
+        lossBound = Double.NaN;
+        int levels = stockPart + 1;
+        int[] table = new int[numWeeks * levels];
+        double[] v = new double[numStates];
+        double[] postValues = new double[capacity + 1];
+        System.arraycopy(rewards, 0, v, 0, numStates);
+        for (int weeksLeft = 1; weeksLeft < numWeeks; weeksLeft++) {
+            computePostValues(v, postValues);
+            for (int stock = 0; stock <= stockPart; stock++) {
+                int best = bestAction(stock, postValues);
+                table[weeksLeft * levels + stock] = best == NO_ACTION ? 0 : best;
+            }
+            for (int s = 0; s < numStates; s++) {
+                v[s] = rewards[s] + gamma * maxPostValue(remainders[s], postValues);
+            }
+        }
+        return table;
+    }
+    
+    /**
+     * The policy iteration algorithm. A policy maps every remainder to a change in stock, since states
+     * with the same remainder have the same actions. It is evaluated exactly by solving the linear
+     * system for the expected utilities of the post-action stock levels, which has one unknown per
+     * stock level instead of one per state.
+     * @return Mapping of stock amounts to recommended actions
+     */
+    public final Map<Integer, Integer> policyIteration() {
+        sweeps = 0;
+        backups = 0;
+        stopReason = null;
+        lossBound = Double.NaN;
+        int[] policy = new int[stockPart + 1];
+        Arrays.fill(policy, NO_ACTION);
+        double[] postValues = new double[capacity + 1];
+        int n = stockPart + 1;
+        double[] a = new double[n * n];
+        double[] b = new double[n];
+        boolean changed;
+        
+        do {
+            evaluatePolicy(policy, a, b);
+            System.arraycopy(b, 0, postValues, 0, n);
+            changed = false;
+            for (int r = 0; r <= stockPart; r++) {
+                double current = policyValue(r, policy[r], postValues);
+                int best = bestAction(r, postValues);
+                // Keep the current action on ties, otherwise the iteration may never settle
+                if (best != NO_ACTION && postValues[r + best] > current) {
+                    policy[r] = best;
+                    changed = true;
+                }
+            }
+            sweeps++;
+            backups += numStates;
+            sweepCompleted(Double.NaN);
+        } while (changed);
+        stopReason = StopReason.POLICY_STABLE;
+        
+        int[] optimalActions = new int[numStates];
+        utilities = new double[numStates];
+        for (int s = 0; s < numStates; s++) {
+            optimalActions[s] = policy[remainders[s]];
+            utilities[s] = rewards[s] + gamma * policyValue(remainders[s], policy[remainders[s]], postValues);
+        }
+        return extractPolicy(optimalActions);
+    }
+    
+    /**
+     * The modified policy iteration algorithm. Every iteration improves the policy greedily, then
+     * evaluates it approximately with a fixed number of sweeps that use the policy's action only.
+     * @param evaluationSweeps Number of policy evaluation sweeps per iteration; zero gives value iteration
+     * @param epsilon The maximum error allowed in the utility of any state
+     * @return Mapping of stock amounts to recommended actions
+     */
+    public final Map<Integer, Integer> modifiedPolicyIteration(final int evaluationSweeps, final double epsilon) {
+        sweeps = 0;
+        backups = 0;
+        stopReason = null;
+        lossBound = Double.NaN;
+        double minDelta = epsilon * (1 - gamma) / gamma;
+        double[] u = startUtilities();
+        double[] uDelta = new double[numStates];
+        double[] postValues = new double[capacity + 1];
+        int[] policy = new int[stockPart + 1];
+        double delta = 0;
+        
+        while (true) {
+            computePostValues(u, postValues);
+            for (int r = 0; r <= stockPart; r++) {
+                policy[r] = bestAction(r, postValues);
+            }
+            delta = 0;
+            for (int s = 0; s < numStates; s++) {
+                uDelta[s] = rewards[s] + gamma * policyValue(remainders[s], policy[remainders[s]], postValues);
+                double aDiff = Math.abs(uDelta[s] - u[s]);
+                if (aDiff > delta) {
+                    delta = aDiff;
+                }
+            }
+            double[] tmp = u;
+            u = uDelta;
+            uDelta = tmp;
+            sweeps++;
+            backups += numStates;
+            sweepCompleted(delta);
+            if (delta <= minDelta) {
+                stopReason = StopReason.RESIDUAL;
+                break;
+            }
+            for (int e = 0; e < evaluationSweeps; e++) {
+                computePostValues(u, postValues);
+                for (int s = 0; s < numStates; s++) {
+                    uDelta[s] = rewards[s] + gamma * policyValue(remainders[s], policy[remainders[s]], postValues);
+                }
+                tmp = u;
+                u = uDelta;
+                uDelta = tmp;
+                sweeps++;
+                backups += numStates;
+                sweepCompleted(Double.NaN);
+            }
+        }
+        utilities = u;
+        
+        int[] optimalActions = new int[numStates];
+        for (int s = 0; s < numStates; s++) {
+            optimalActions[s] = policy[remainders[s]];
+        }
+        return extractPolicy(optimalActions);
+    }
+    
+    /**
+     * Solves the linear system for the expected utilities of post-action stock levels under a policy:
+     * post[k] = sum over successors s of P(k, s) * (R(s) + gamma * post[k'(s)]), where k'(s) is the
+     * stock level the policy moves to from the remainder of s.
+     * @param policy Change in stock by remainder, or NO_ACTION
+     * @param a Work array for the system matrix, of size (stockPart + 1)^2
+     * @param b Work array for the right hand side, filled with the solution
+     */
+    private void evaluatePolicy(final int[] policy, final double[] a, final double[] b) {
+        int n = stockPart + 1;
+        Arrays.fill(a, 0);
+        Arrays.fill(b, 0);
+        for (int k = 0; k < n; k++) {
+            a[k * n + k] = 1;
+            for (int i = successorStart[k]; i < successorStart[k + 1]; i++) {
+                int s = successorStates[i];
+                double p = successorProbs[i];
+                b[k] += p * rewards[s];
+                int r = remainders[s];
+                if (policy[r] != NO_ACTION && r + policy[r] <= stockPart) {
+                    a[k * n + r + policy[r]] -= gamma * p;
+                }
+            }
+        }
+        solveLinear(a, b, n);
+    }
+    
+    /**
+     * Gaussian elimination with partial pivoting.
+     * @param a Row-major system matrix, destroyed
+     * @param b Right hand side, replaced by the solution
+     * @param n Size of the system
+     */
+    private static void solveLinear(final double[] a, final double[] b, final int n) {
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row * n + col]) > Math.abs(a[pivot * n + col])) {
+                    pivot = row;
+                }
+            }
+            if (pivot != col) {
+                for (int j = col; j < n; j++) {
+                    double tmp = a[col * n + j];
+                    a[col * n + j] = a[pivot * n + j];
+                    a[pivot * n + j] = tmp;
+                }
+                double tmp = b[col];
+                b[col] = b[pivot];
+                b[pivot] = tmp;
+            }
+            for (int row = col + 1; row < n; row++) {
+                double f = a[row * n + col] / a[col * n + col];
+                if (f == 0) {
+                    continue;
+                }
+                for (int j = col; j < n; j++) {
+                    a[row * n + j] -= f * a[col * n + j];
+                }
+                b[row] -= f * b[col];
+            }
+        }
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = b[row];
+            for (int j = row + 1; j < n; j++) {
+                sum -= a[row * n + j] * b[j];
+            }
+            b[row] = sum / a[row * n + row];
+        }
+    }
+    
+    /**
+     * @param remainder Stock left after customer consumption
+     * @param chng Change in stock chosen for the remainder, or NO_ACTION
+     * @param postValues Expected utilities by post-action stock level
+     * @return Expected utility of the next state under the chosen action
+     */
+    private double policyValue(final int remainder, final int chng, final double[] postValues) {
+        return chng == NO_ACTION ? 0 : postValues[remainder + chng];
+    }
+    
+    /**
+     * @param remainder Stock left after customer consumption
+     * @param postValues Expected utilities by post-action stock level
+     * @return Largest expected utility of the next state over available actions, or zero
+     *         if none of the actions has positive expected utility
+     */
+    private double maxPostValue(final int remainder, final double[] postValues) {
+        double aMax = 0;
+        for (int chng = minChanges[remainder]; chng <= maxChanges[remainder]; chng++) {
+            if (postValues[remainder + chng] > aMax) {
+                aMax = postValues[remainder + chng];
+            }
+        }
+        return aMax;
+    }
+    
+    /**
+     * @param remainder Stock left after customer consumption
+     * @param postValues Expected utilities by post-action stock level
+     * @return Change in stock of the first action with the largest positive expected utility,
+     *         or NO_ACTION if there is none
+     */
+    private int bestAction(final int remainder, final double[] postValues) {
+        double aMax = 0;
+        int best = NO_ACTION;
+        for (int chng = minChanges[remainder]; chng <= maxChanges[remainder]; chng++) {
+            if (postValues[remainder + chng] > aMax) {
+                aMax = postValues[remainder + chng];
+                best = chng;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Computes the expected utility of the next state for every post-action stock level.
+     * The next state distribution depends only on the stock after the action, so this is
+     * shared by all state and action pairs leading to the same stock.
+     * @param u Utilities of states, by dense state index
+     * @param postValues Filled with expected utilities, by stock level from 0 to capacity;
+     *        levels above stockPart are outside of the state space and get zero
+     */
+    private void computePostValues(final double[] u, final double[] postValues) {
+        for (int next = 0; next <= stockPart; next++) {
+            double sum = 0;
+            for (int k = successorStart[next]; k < successorStart[next + 1]; k++) {
+                sum += successorProbs[k] * u[successorStates[k]];
+            }
+            postValues[next] = sum;
+        }
+        for (int next = stockPart + 1; next <= capacity; next++) {
+            postValues[next] = 0;
+        }
+    }
+    
+    /**
+     * @param optimalActions Recommended change in stock for each dense state index
+     * @return Mapping of stock amounts to recommended actions
+     */
+    private Map<Integer, Integer> extractPolicy(final int[] optimalActions) {
+        Map<Integer, Integer> policy = new HashMap<Integer, Integer>();
+        for (int stock = 0; stock <= stockPart; stock++) {
+            int a = optimalActions[stateIndex(stock, 0)];
+            if (a != NO_ACTION) {
+                policy.put(stock, a);
+            }
+        }
+        return policy;
+    }
+
     /**
      * @param keys Map keys
      * @param value Value for entries
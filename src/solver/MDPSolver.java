@@ -0,0 +1,15 @@
+package solver;
+
+import java.util.Map;
+
+/**
+ * Common interface of the algorithms solving a single item type {@link MDP}.
+ */
+public interface MDPSolver {
+    
+    /**
+     * @param mdp Process to solve
+     * @return Mapping of stock amounts to recommended actions
+     */
+    public Map<Integer, Integer> solve(MDP mdp);
+}
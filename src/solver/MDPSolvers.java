@@ -0,0 +1,65 @@
+package solver;
+
+/**
+ * Creates {@link MDPSolver} instances from their configuration names.
+ */
+public final class MDPSolvers {
+    /**
+     * Default number of evaluation sweeps for modified policy iteration. Evaluation sweeps contract
+     * no faster than value iteration sweeps, but skip the maximum over the actions, so a few of them
+     * save time while every further one mostly adds sweeps.
+     */
+    public static final int DEFAULT_EVALUATION_SWEEPS = 3;
+    
+    private MDPSolvers() {
+    }
+    
+    /**
+     * @param name One of vi, vi-gauss_seidel, vi-prioritized, vi-parallel_jacobi, pi or mpi[:sweeps]
+     * @param epsilon The maximum error allowed in the utility of any state
+     * @return Solver with the given name
+     */
+    public static MDPSolver forName(final String name, final double epsilon) {
+        return forName(name, epsilon, StoppingRule.RESIDUAL_ONLY);
+    }
+    
+    /**
+     * @param name One of vi, vi-gauss_seidel, vi-prioritized, vi-parallel_jacobi, pi or mpi[:sweeps]
+     * @param epsilon The maximum error allowed in the utility of any state
+     * @param rule Tests and budgets ending value iteration besides the residual test;
+     *        the other algorithms ignore it
+     * @return Solver with the given name
+     */
+    public static MDPSolver forName(final String name, final double epsilon, final StoppingRule rule) {
+        return forName(name, epsilon, rule, false);
+    }
+    
+    /**
+     * @param name One of vi, vi-gauss_seidel, vi-prioritized, vi-parallel_jacobi, pi or mpi[:sweeps]
+     * @param epsilon The maximum error allowed in the utility of any state
+     * @param rule Tests and budgets ending value iteration besides the residual test;
+     *        the other algorithms ignore it
+     * @param eliminate Whether Jacobi value iteration drops provably suboptimal actions
+     * @return Solver with the given name
+     */
+    public static MDPSolver forName(final String name, final double epsilon, final StoppingRule rule,
+            final boolean eliminate) {
+        String n = name.trim().toLowerCase();
+        if (n.equals("vi") || n.equals("vi-jacobi")) {
+            return new ValueIterationSolver(epsilon, UpdateSchedule.JACOBI, rule, eliminate);
+        } else if (n.equals("vi-gauss_seidel")) {
+            return new ValueIterationSolver(epsilon, UpdateSchedule.GAUSS_SEIDEL, rule, eliminate);
+        } else if (n.equals("vi-prioritized")) {
+            return new ValueIterationSolver(epsilon, UpdateSchedule.PRIORITIZED, rule, eliminate);
+        } else if (n.equals("vi-parallel_jacobi")) {
+            return new ValueIterationSolver(epsilon, UpdateSchedule.PARALLEL_JACOBI, rule, eliminate);
+        } else if (n.equals("pi")) {
+            return new PolicyIterationSolver();
+        } else if (n.equals("mpi")) {
+            return new ModifiedPolicyIterationSolver(DEFAULT_EVALUATION_SWEEPS, epsilon);
+        } else if (n.startsWith("mpi:")) {
+            return new ModifiedPolicyIterationSolver(Integer.valueOf(n.substring(4)), epsilon);
+        }
+        throw new IllegalArgumentException("Unknown MDP solver: " + name);
+    }
+}
@@ -0,0 +1,31 @@
+package solver;
+
+import java.util.Map;
+
+/**
+ * Solves the process with modified policy iteration.
+ */
+public class ModifiedPolicyIterationSolver implements MDPSolver {
+    /** Number of policy evaluation sweeps per iteration. */
+    private int evaluationSweeps;
+    /** The maximum error allowed in the utility of any state. */
+    private double epsilon;
+    
+    /**
+     * @param sweeps Number of policy evaluation sweeps per iteration
+     * @param maxError The maximum error allowed in the utility of any state
+     */
+    public ModifiedPolicyIterationSolver(final int sweeps, final double maxError) {
+        evaluationSweeps = sweeps;
+        epsilon = maxError;
+    }
+    
+    @Override
+    public Map<Integer, Integer> solve(final MDP mdp) {
+        return mdp.modifiedPolicyIteration(evaluationSweeps, epsilon);
+    }
+    
+    public String toString() {
+        return "mpi:" + evaluationSweeps + "(" + epsilon + ")";
+    }
+}
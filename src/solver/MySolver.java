@@ -4,16 +4,47 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import problem.BatchPolicy;
 import problem.Store;
 import problem.Matrix;
 import problem.ProblemSpec;
 
 public class MySolver implements OrderingAgent {
 	
+	/** Tests and budgets ending value iteration of every item type besides the residual test. */
+	public static StoppingRule STOPPING_RULE = new StoppingRule(Boolean.getBoolean("solver.spanStop"),
+			Integer.getInteger("solver.stableSweeps", 0), Long.getLong("solver.maxSweeps", 0),
+			Long.getLong("solver.maxMillis", 0));
+	/** Algorithm used to solve the process of every item type, see {@link MDPSolvers#forName}. */
+	public static MDPSolver OFFLINE_SOLVER = MDPSolvers.forName(System.getProperty("solver.mdp", "vi"), 1,
+			STOPPING_RULE, Boolean.getBoolean("solver.actionElimination"));
+	/** Number of threads solving item types concurrently; 1 solves them one after another. */
+	public static int PARALLELISM = Integer.getInteger("solver.parallelism", 1);
+	/** Whether to plan for the remaining weeks only instead of using a stationary policy. */
+	public static boolean FINITE_HORIZON = Boolean.getBoolean("solver.finiteHorizon");
+	/** Whether to solve all item types as one joint process instead of one process per type. */
+	public static boolean JOINT = Boolean.getBoolean("solver.joint");
+	/** Solved item types shared by all solver instances, so identical processes are solved once. */
+	public static PolicyCache POLICY_CACHE = new PolicyCache(
+			Integer.getInteger("solver.cacheSize", PolicyCache.DEFAULT_CAPACITY),
+			System.getProperty("solver.cacheDir"), Boolean.getBoolean("solver.warmStart"));
+	/** Sweeps, residuals, time and allocations of every item type solved by any solver instance. */
+	public static SolverMetrics METRICS = new SolverMetrics();
+	
 	private ProblemSpec spec = new ProblemSpec();
 	private Store store;
     private List<Matrix> probabilities;
     private List<ItemType> types;
+    private ItemType[] typesById;
+    /** Orders of the solved item types, shared by the single and the batch form of the policy. */
+    private TableBatchPolicy policyTable;
+    private JointMDP joint;
 	
 	public MySolver(ProblemSpec spec) throws IOException {
 	    this.spec = spec;
@@ -22,6 +53,15 @@ public class MySolver implements OrderingAgent {
 	}
 	
 	public void doOfflineComputation() {
+	    if (JOINT) {
+	        joint = new JointMDP(store.getCapacity(), store.getMaxPurchase(), store.getMaxReturns(),
+	                spec.getPrices(), spec.getDiscountFactor(), probabilities);
+	        ItemMetrics metrics = METRICS.start(-1, 0, store.getCapacity(), "joint");
+	        joint.setListener(metrics);
+	        joint.solve(1);
+	        METRICS.finish(metrics, joint.getSweepCount(), joint.getBackupCount(), StopReason.RESIDUAL, Double.NaN);
+	        return;
+	    }
 	    types = new ArrayList<ItemType>();
 	    List<Double> p = spec.getPrices();
 	    for (int id = 0; id < p.size(); id++) {
@@ -40,62 +80,103 @@ public class MySolver implements OrderingAgent {
             }
 	    });
 	    List<Integer> storageParts = getStorageParts(store.getCapacity(), store.getMaxTypes());
+	    typesById = new ItemType[types.size()];
 	    for (int idx = 0; idx < types.size(); idx++) {
 	        types.get(idx).setStorage(storageParts.get(idx));
+	        typesById[types.get(idx).getId()] = types.get(idx);
 	    }
 	    
-	    for (ItemType t: types) {
-	        MDP itemP = new MDP(store.getCapacity(), t.getStorage(), store.getMaxPurchase(), store.getMaxReturns(),
-	                spec.getPenaltyFee(), spec.getPrices().get(t.getId()), 
-	                spec.getDiscountFactor(), probabilities.get(t.getId()));
-	        t.setPolicy(itemP.valueIteration(1));
+	    if (PARALLELISM <= 1) {
+	        for (ItemType t: types) {
+	            solveItem(t);
+	        }
+	    } else {
+	        solveItemsInParallel();
 	    }
+	    policyTable = new TableBatchPolicy(types, typesById, store.getMaxPurchase(), FINITE_HORIZON);
 	}
 	
+	/**
+	 * Solves the process of a single item type and stores the resulting policy in it.
+	 * @param t Item type to solve
+	 */
+	private void solveItem(ItemType t) {
+	    MDP itemP = new MDP(store.getCapacity(), t.getStorage(), store.getMaxPurchase(), store.getMaxReturns(),
+	            spec.getPenaltyFee(), spec.getPrices().get(t.getId()), 
+	            spec.getDiscountFactor(), probabilities.get(t.getId()));
+	    ItemMetrics metrics = METRICS.start(t.getId(), t.getPrice(), t.getStorage(),
+	            FINITE_HORIZON ? "finite-horizon" : OFFLINE_SOLVER.toString());
+	    itemP.setListener(metrics);
+	    if (FINITE_HORIZON) {
+	        t.setHorizonPolicy(POLICY_CACHE.solveFiniteHorizon(itemP, spec.getNumWeeks()));
+	    } else {
+	        t.setPolicy(POLICY_CACHE.solve(itemP, OFFLINE_SOLVER));
+	    }
+	    METRICS.finish(metrics, itemP.getSweepCount(), itemP.getBackupCount(), itemP.getStopReason(),
+	            itemP.getLossBound());
+	}
 	
-	public List<Integer> generateStockOrder(List<Integer> stockInventory,
-											int numWeeksLeft) {
-	    List<Integer> itemOrders = new ArrayList<Integer>();
-
-	    int ordered = 0;
-	    int totalOrdered = 0;
-	    int curr = 0;
-	    int totalStock = 0;
-	    for (int itemId = 0; itemId < stockInventory.size(); itemId++) {
-	        curr = stockInventory.get(itemId);
-	        totalStock += curr;
-	        for (ItemType t: types) {
-	            if (t.getId() == itemId) {
-	                if (curr < t.getPolicy().size()) {
-    	                ordered = t.getPolicy().get(curr);
-    	                if (curr + ordered > t.getStorage()) {
-    	                    ordered -= t.getStorage() - (curr + ordered);
-    	                }
+	/**
+	 * Solves the item types on a pool of PARALLELISM threads. The item types share no state
+	 * and each task only writes the policy of its own type, so the result is the same as solving
+	 * them one after another.
+	 */
+	private void solveItemsInParallel() {
+	    ExecutorService pool = Executors.newFixedThreadPool(Math.min(PARALLELISM, types.size()));
+	    try {
+	        List<Future<?>> tasks = new ArrayList<Future<?>>();
+	        for (final ItemType t: types) {
+	            tasks.add(pool.submit(new Callable<Void>() {
+	                @Override
+	                public Void call() {
+	                    solveItem(t);
+	                    return null;
 	                }
-	                break;
-	            }
+	            }));
+	        }
+	        for (Future<?> task: tasks) {
+	            task.get();
 	        }
-	        itemOrders.add(itemId, ordered);
-	        totalOrdered += ordered;
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        throw new IllegalStateException("Offline computation interrupted", e);
+	    } catch (ExecutionException e) {
+	        throw new IllegalStateException("Offline computation failed", e.getCause());
+	    } finally {
+	        pool.shutdownNow();
+	    }
+	}
+	
+	
+	public List<Integer> generateStockOrder(List<Integer> stockInventory,
+											int numWeeksLeft) {
+	    if (joint != null) {
+	        return joint.getOrder(stockInventory);
+	    }
+	    // a single episode of the batch policy, so both forms order exactly the same
+	    int[] inventory = new int[stockInventory.size()];
+	    for (int itemId = 0; itemId < inventory.length; itemId++) {
+	        inventory[itemId] = stockInventory.get(itemId);
+	    }
+	    int[] orders = new int[inventory.length];
+	    policyTable.generateStockOrders(inventory, numWeeksLeft, orders);
+	    List<Integer> itemOrders = new ArrayList<Integer>(orders.length);
+	    for (int ordered : orders) {
+	        itemOrders.add(ordered);
 	    }
-	    int idx = types.size() - 1;
-	    int id = 0;
-        // pre-cut to not exceed maximum order size
-        while (totalOrdered > store.getMaxPurchase()) {
-            id = types.get(idx).getId();
-            if (itemOrders.get(id) > 0) {
-                itemOrders.set(id, itemOrders.get(id) - 1);
-                totalOrdered--;
-            }
-            idx--;
-            if (idx < 0) {
-                idx = types.size() - 1;
-            }
-        }
-	    
 	    return itemOrders;
 	}
 
+	/**
+	 * @return The policy computed offline in a form that orders for many episodes at once
+	 */
+	public BatchPolicy getBatchPolicy() {
+	    if (policyTable == null) {
+	        throw new IllegalStateException("Batch policy requires the per item type policies");
+	    }
+	    return policyTable;
+	}
+
 	private List<Integer> getStorageParts(int totalStorage, int typesCount) {
 	    List<Integer> parts = new ArrayList<Integer>();
 	    double d = 1.0 / totalStorage;
@@ -0,0 +1,108 @@
+package solver;
+
+import java.lang.reflect.Constructor;
+
+import problem.ProblemSpec;
+import problem.RandomSourceType;
+import problem.Simulator;
+
+/**
+ * Compares two ordering agents with common random numbers: in every simulation both agents
+ * face user wants drawn from identically seeded random streams, so most of the week to week
+ * noise cancels in the difference of their profits. Each simulator draws one random number
+ * per item type per week whatever the orders are, so the two agents see exactly the same wants
+ * for any week in which their stock levels match.
+ * 
+ * Usage: PairedEvaluation input solverA solverB [numSims] [-seed S] [-rng splittable|counter]
+ */
+public class PairedEvaluation {
+
+	public static void main(String[] args) throws Exception {
+		String inputPath = null;
+		String solverA = null;
+		String solverB = null;
+		int numSimulations = 0;
+		long masterSeed = System.nanoTime();
+		RandomSourceType rngType = RandomSourceType.SPLITTABLE;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i].trim();
+			if (arg.equals("-seed") && i + 1 < args.length) {
+				masterSeed = Long.valueOf(args[++i].trim());
+			} else if (arg.equals("-rng") && i + 1 < args.length) {
+				rngType = RandomSourceType.valueOf(args[++i].trim().toUpperCase());
+			} else if (inputPath == null) {
+				inputPath = arg;
+			} else if (solverA == null) {
+				solverA = arg;
+			} else if (solverB == null) {
+				solverB = arg;
+			} else if (numSimulations == 0) {
+				numSimulations = Integer.valueOf(arg);
+			}
+		}
+		if (solverB == null) {
+			throw new IllegalArgumentException("Input path and two solver classes expected.");
+		}
+		if (numSimulations == 0) {
+			numSimulations = Runner.DEFAULT_NUM_SIMULATIONS;
+		}
+
+		ProblemSpec spec = new ProblemSpec(inputPath);
+		OrderingAgent agentA = createAgent(solverA, spec);
+		OrderingAgent agentB = createAgent(solverB, spec);
+		long[] seeds = Runner.episodeSeeds(masterSeed, numSimulations);
+		Simulator simulator = new Simulator(spec, null, false);
+		ProfitStatistics statsA = new ProfitStatistics();
+		ProfitStatistics statsB = new ProfitStatistics();
+		ProfitStatistics difference = new ProfitStatistics();
+		for (int simNo = 0; simNo < numSimulations; simNo++) {
+			simulator.setRandom(rngType.create(seeds[simNo]));
+			double profitA = simulate(simulator, agentA, spec);
+			simulator.setRandom(rngType.create(seeds[simNo]));
+			double profitB = simulate(simulator, agentB, spec);
+			statsA.add(profitA);
+			statsB.add(profitB);
+			difference.add(profitA - profitB);
+		}
+
+		System.out.printf("Paired comparison over %d runs (master seed %d, %s streams):\n",
+				numSimulations, masterSeed, rngType.name().toLowerCase());
+		System.out.printf("%s mean profit: %f\n", solverA, statsA.getMean());
+		System.out.printf("%s mean profit: %f\n", solverB, statsB.getMean());
+		System.out.printf("Mean difference: %f (standard error %f)\n",
+				difference.getMean(), difference.getStandardError());
+		System.out.printf("95%% confidence interval of difference: [%f, %f]\n",
+				difference.getMean() - difference.getHalfWidth95(),
+				difference.getMean() + difference.getHalfWidth95());
+		double independentError = Math.sqrt(statsA.getStandardError() * statsA.getStandardError()
+				+ statsB.getStandardError() * statsB.getStandardError());
+		System.out.printf("Standard error with independent streams would be about %f\n", independentError);
+	}
+
+	/**
+	 * @param className Name of the solver class
+	 * @param spec The problem spec
+	 * @return A solver which has done its offline computation
+	 */
+	private static OrderingAgent createAgent(String className, ProblemSpec spec) throws Exception {
+		Constructor<?> ctor = Class.forName(className).getConstructor(ProblemSpec.class);
+		OrderingAgent agent = (OrderingAgent)ctor.newInstance(spec);
+		agent.doOfflineComputation();
+		return agent;
+	}
+
+	/**
+	 * @param simulator Simulator whose random stream has been set
+	 * @param agent The agent placing orders
+	 * @param spec The problem spec
+	 * @return Total discounted profit of one simulation
+	 */
+	private static double simulate(Simulator simulator, OrderingAgent agent, ProblemSpec spec) {
+		simulator.reset();
+		for (int i = 0; i < spec.getNumWeeks(); i++) {
+			simulator.simulateStep(agent.generateStockOrder(
+					simulator.getStockInventory(), spec.getNumWeeks() - (i+1)));
+		}
+		return simulator.getTotalProfit();
+	}
+}
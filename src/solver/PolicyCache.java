@@ -0,0 +1,449 @@
+package solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Cache of solved single item type processes, keyed by a SHA-256 hash of everything the solution
+ * depends on: capacity, storage part, order and return limits, fee, price, discount factor, the
+ * transition matrix and the solver configuration. Entries are kept in an in-memory LRU layer and,
+ * if a directory is set, in files which outlive the process.
+ * Utilities of solved processes are also remembered under a hash which leaves out the price and
+ * the discount factor; with warm starts enabled, a process differing only in those starts from
+ * the remembered utilities, rescaled to the new price and discount factor, instead of from zero.
+ * Only the policies of solves started from zero are cached, since a warm started solve may end
+ * with another epsilon-optimal policy.
+ * All methods are thread safe.
+ */
+public class PolicyCache {
+    /** Default number of entries kept in memory. */
+    public static final int DEFAULT_CAPACITY = 256;
+    /** First int of every cache file. */
+    private static final int MAGIC = 0x4d445043;
+    /** Version of the cache file format. */
+    private static final int VERSION = 1;
+    /** Suffix of files holding solved policies. */
+    private static final String POLICY_SUFFIX = ".policy";
+    /** Suffix of files holding utilities for warm starts. */
+    private static final String WARM_SUFFIX = ".warm";
+    
+    /** Solved policies by key, least recently used first. */
+    private final Map<String, CachedPolicy> policies;
+    /** Utilities, price and discount factor of solved processes by key without economics. */
+    private final Map<String, WarmStart> warmStarts;
+    /** Directory of the on-disk layer, or null. */
+    private File directory;
+    /** Whether to warm start processes which only differ in price or discount factor. */
+    private boolean warmStart;
+    /** Number of lookups answered from the cache. */
+    private long hits;
+    /** Number of lookups which had to solve the process. */
+    private long misses;
+    /** Number of solves which started from cached utilities. */
+    private long warmStarted;
+    
+    /**
+     * @param capacity Number of entries kept in memory
+     * @param dir Directory of the on-disk layer, or null for memory only
+     * @param warm Whether to warm start processes which only differ in price or discount factor
+     */
+    public PolicyCache(final int capacity, final String dir, final boolean warm) {
+        policies = new LruMap<CachedPolicy>(capacity);
+        warmStarts = new LruMap<WarmStart>(capacity);
+        warmStart = warm;
+        setDirectory(dir);
+    }
+    
+    /**
+     * @param dir Directory of the on-disk layer, created if needed, or null for memory only
+     */
+    public final synchronized void setDirectory(final String dir) {
+        directory = dir == null ? null : new File(dir);
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create policy cache directory " + dir);
+        }
+    }
+    
+    /**
+     * Returns the cached policy of the process, or solves it and caches the result.
+     * @param mdp Process to solve
+     * @param solver Algorithm to solve it with; its toString() identifies its configuration
+     * @return Mapping of stock amounts to recommended actions
+     */
+    public final Map<Integer, Integer> solve(final MDP mdp, final MDPSolver solver) {
+        String key = key(mdp, solver.toString(), true);
+        CachedPolicy cached = lookup(key);
+        if (cached != null) {
+            mdp.markCached();
+            return new HashMap<Integer, Integer>(cached.policy);
+        }
+        String warmKey = key(mdp, "", false);
+        double[] initial = warmUtilities(warmKey, mdp);
+        mdp.setInitialUtilities(initial);
+        Map<Integer, Integer> policy = solver.solve(mdp);
+        mdp.setInitialUtilities(null);
+        // A solve cut short by the clock depends on the machine, so it is not reused
+        if (mdp.getStopReason() == StopReason.TIME_LIMIT) {
+            return policy;
+        }
+        // A warm started solve may settle on another epsilon-optimal policy than a cold one,
+        // so only cold solves are cached and the cache does not depend on the order of solves
+        if (initial == null) {
+            store(key, new HashMap<Integer, Integer>(policy), null);
+        }
+        double[] u = mdp.getUtilities();
+        if (u != null) {
+            storeWarm(warmKey, new WarmStart(mdp.getItemPrice(), mdp.getDiscount(), u));
+        }
+        return policy;
+    }
+    
+    /**
+     * Returns the cached finite horizon policy of the process, or computes and caches it.
+     * @param mdp Process to solve
+     * @param numWeeks Number of weeks the store is evaluated for
+     * @return Policy table as returned by {@link MDP#finiteHorizonPolicy(int)}
+     */
+    public final int[] solveFiniteHorizon(final MDP mdp, final int numWeeks) {
+        String key = key(mdp, "horizon:" + numWeeks, true);
+        CachedPolicy cached = lookup(key);
+        if (cached != null) {
+            mdp.markCached();
+            return cached.table.clone();
+        }
+        int[] table = mdp.finiteHorizonPolicy(numWeeks);
+        store(key, null, table.clone());
+        return table;
+    }
+    
+    /**
+     * @return Number of lookups answered from the cache
+     */
+    public final synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * @return Number of lookups which had to solve the process
+     */
+    public final synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * @return Number of solves which started from cached utilities
+     */
+    public final synchronized long getWarmStarts() {
+        return warmStarted;
+    }
+    
+    /**
+     * Empties the in-memory layer; files are kept.
+     */
+    public final synchronized void clear() {
+        policies.clear();
+        warmStarts.clear();
+    }
+    
+    /**
+     * @param key Key of the process and solver
+     * @return Cached policy or finite horizon table, or null
+     */
+    private synchronized CachedPolicy lookup(final String key) {
+        CachedPolicy cached = policies.get(key);
+        if (cached == null && directory != null) {
+            cached = readPolicy(new File(directory, key + POLICY_SUFFIX));
+            if (cached != null) {
+                policies.put(key, cached);
+            }
+        }
+        if (cached == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return cached;
+    }
+    
+    /**
+     * @param key Key of the process and solver
+     * @param policy Stationary policy, or null
+     * @param table Finite horizon table, or null
+     */
+    private synchronized void store(final String key, final Map<Integer, Integer> policy, final int[] table) {
+        CachedPolicy entry = new CachedPolicy(policy, table);
+        policies.put(key, entry);
+        if (directory != null) {
+            writePolicy(new File(directory, key + POLICY_SUFFIX), entry);
+        }
+    }
+    
+    /**
+     * @param warmKey Key of the process without price and discount factor
+     * @param mdp Process about to be solved
+     * @return Cached utilities rescaled to the process, or null
+     */
+    private synchronized double[] warmUtilities(final String warmKey, final MDP mdp) {
+        if (!warmStart) {
+            return null;
+        }
+        WarmStart cached = warmStarts.get(warmKey);
+        if (cached == null && directory != null) {
+            cached = readWarm(new File(directory, warmKey + WARM_SUFFIX));
+            if (cached != null) {
+                warmStarts.put(warmKey, cached);
+            }
+        }
+        if (cached == null) {
+            return null;
+        }
+        warmStarted++;
+        // Rewards are proportional to the price, and utilities to the sum of discounted rewards
+        double scale = mdp.getItemPrice() / cached.price * (1 - cached.gamma) / (1 - mdp.getDiscount());
+        double[] u = new double[cached.utilities.length];
+        for (int s = 0; s < u.length; s++) {
+            u[s] = cached.utilities[s] * scale;
+        }
+        return u;
+    }
+    
+    /**
+     * @param warmKey Key of the process without price and discount factor
+     * @param warm Utilities of the solved process
+     */
+    private synchronized void storeWarm(final String warmKey, final WarmStart warm) {
+        warmStarts.put(warmKey, warm);
+        if (directory != null) {
+            writeWarm(new File(directory, warmKey + WARM_SUFFIX), warm);
+        }
+    }
+    
+    /**
+     * @param mdp The process
+     * @param solverName Configuration of the solver
+     * @param economics Whether the key depends on the item price and discount factor
+     * @return Hexadecimal SHA-256 hash of the inputs
+     */
+    private static String key(final MDP mdp, final String solverName, final boolean economics) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        mdp.digestInputs(md, economics);
+        md.update(solverName.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * @param file Cache file
+     * @return Policy or table read from the file, or null if there is no valid file
+     */
+    private static CachedPolicy readPolicy(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                Map<Integer, Integer> policy = null;
+                int size = in.readInt();
+                if (size >= 0) {
+                    policy = new HashMap<Integer, Integer>();
+                    for (int i = 0; i < size; i++) {
+                        policy.put(in.readInt(), in.readInt());
+                    }
+                }
+                int[] table = null;
+                size = in.readInt();
+                if (size >= 0) {
+                    table = new int[size];
+                    for (int i = 0; i < size; i++) {
+                        table[i] = in.readInt();
+                    }
+                }
+                return new CachedPolicy(policy, table);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // An unreadable file is a miss; solving again overwrites it
+            return null;
+        }
+    }
+    
+    /**
+     * @param file Cache file
+     * @param entry Policy or table to write
+     */
+    private static void writePolicy(final File file, final CachedPolicy entry) {
+        DataOutputStream out = null;
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Map<Integer, Integer> policy = entry.policy;
+            out.writeInt(policy == null ? -1 : policy.size());
+            if (policy != null) {
+                for (Entry<Integer, Integer> e : policy.entrySet()) {
+                    out.writeInt(e.getKey());
+                    out.writeInt(e.getValue());
+                }
+            }
+            int[] table = entry.table;
+            out.writeInt(table == null ? -1 : table.length);
+            if (table != null) {
+                for (int v : table) {
+                    out.writeInt(v);
+                }
+            }
+            out.close();
+            out = null;
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+    
+    /**
+     * @param file Warm start file
+     * @return Utilities read from the file, or null if there is no valid file
+     */
+    private static WarmStart readWarm(final File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                double price = in.readDouble();
+                double gamma = in.readDouble();
+                double[] u = new double[in.readInt()];
+                for (int i = 0; i < u.length; i++) {
+                    u[i] = in.readDouble();
+                }
+                return new WarmStart(price, gamma, u);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * @param file Warm start file
+     * @param warm Utilities to write
+     */
+    private static void writeWarm(final File file, final WarmStart warm) {
+        DataOutputStream out = null;
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(warm.price);
+            out.writeDouble(warm.gamma);
+            out.writeInt(warm.utilities.length);
+            for (double v : warm.utilities) {
+                out.writeDouble(v);
+            }
+            out.close();
+            out = null;
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+    
+    /**
+     * @param out Stream left open by a failed write, or null
+     */
+    private static void closeQuietly(final DataOutputStream out) {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // the write already failed
+            }
+        }
+    }
+    
+    /**
+     * Stationary policy or finite horizon table of a solved process.
+     */
+    private static class CachedPolicy {
+        private final Map<Integer, Integer> policy;
+        private final int[] table;
+        
+        CachedPolicy(final Map<Integer, Integer> stationary, final int[] horizonTable) {
+            policy = stationary;
+            table = horizonTable;
+        }
+    }
+    
+    /**
+     * Utilities of a solved process with the price and discount factor they were computed for.
+     */
+    private static class WarmStart {
+        private final double price;
+        private final double gamma;
+        private final double[] utilities;
+        
+        WarmStart(final double itemPrice, final double discount, final double[] u) {
+            price = itemPrice;
+            gamma = discount;
+            utilities = u;
+        }
+    }
+    
+    /**
+     * Map which drops its least recently accessed entry when it grows beyond its capacity.
+     */
+    private static class LruMap<V> extends LinkedHashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+        
+        LruMap(final int maxEntries) {
+            super(16, 0.75f, true);
+            capacity = maxEntries;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package solver;
+
+import java.util.Map;
+
+/**
+ * Solves the process with exact policy iteration.
+ */
+public class PolicyIterationSolver implements MDPSolver {
+    
+    @Override
+    public Map<Integer, Integer> solve(final MDP mdp) {
+        return mdp.policyIteration();
+    }
+    
+    public String toString() {
+        return "pi";
+    }
+}
@@ -0,0 +1,72 @@
+package solver;
+
+/**
+ * Running mean and variance of the total discounted profit of simulated episodes,
+ * accumulated with Welford's algorithm.
+ */
+public class ProfitStatistics {
+    /** Normal quantile for a two-sided 95% confidence interval. */
+    public static final double Z_95 = 1.959964;
+    
+    /** Number of episodes added. */
+    private long count;
+    /** Mean profit of the episodes added. */
+    private double mean;
+    /** Sum of squared differences from the mean. */
+    private double m2;
+    /** Sum of profits of the episodes added. */
+    private double total;
+    
+    /**
+     * @param profit Total discounted profit of an episode
+     */
+    public void add(final double profit) {
+        count++;
+        total += profit;
+        double d = profit - mean;
+        mean += d / count;
+        m2 += d * (profit - mean);
+    }
+    
+    /**
+     * @return Number of episodes added
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * @return Sum of profits of the episodes added
+     */
+    public double getTotal() {
+        return total;
+    }
+    
+    /**
+     * @return Mean profit
+     */
+    public double getMean() {
+        return mean;
+    }
+    
+    /**
+     * @return Sample variance of the profit, zero for fewer than two episodes
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+    
+    /**
+     * @return Standard error of the mean profit
+     */
+    public double getStandardError() {
+        return count < 1 ? 0 : Math.sqrt(getVariance() / count);
+    }
+    
+    /**
+     * @return Half-width of the 95% confidence interval of the mean profit
+     */
+    public double getHalfWidth95() {
+        return Z_95 * getStandardError();
+    }
+}
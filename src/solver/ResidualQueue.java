@@ -0,0 +1,104 @@
+package solver;
+
+/**
+ * Indexed binary max-heap of states keyed by their Bellman residual.
+ * Every state stays in the queue; updating a key moves the state to its new place,
+ * so the queue never allocates after construction.
+ */
+class ResidualQueue {
+    /** Heap of state indices. */
+    private int[] heap;
+    /** Position of each state in the heap. */
+    private int[] position;
+    /** Residual of each state. */
+    private double[] keys;
+
+    /**
+     * @param size Number of states, all of which start with zero residual
+     */
+    ResidualQueue(final int size) {
+        heap = new int[size];
+        position = new int[size];
+        keys = new double[size];
+        for (int i = 0; i < size; i++) {
+            heap[i] = i;
+            position[i] = i;
+        }
+    }
+
+    /**
+     * @return State with the largest residual
+     */
+    int peek() {
+        return heap[0];
+    }
+
+    /**
+     * @return Largest residual in the queue
+     */
+    double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * @param state State to update
+     * @param key New residual of the state
+     */
+    void update(final int state, final double key) {
+        double old = keys[state];
+        keys[state] = key;
+        if (key > old) {
+            siftUp(position[state]);
+        } else if (key < old) {
+            siftDown(position[state]);
+        }
+    }
+
+    /**
+     * @param pos Heap position of an entry whose key has grown
+     */
+    private void siftUp(int pos) {
+        int state = heap[pos];
+        double key = keys[state];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (keys[heap[parent]] >= key) {
+                break;
+            }
+            move(heap[parent], pos);
+            pos = parent;
+        }
+        move(state, pos);
+    }
+
+    /**
+     * @param pos Heap position of an entry whose key has shrunk
+     */
+    private void siftDown(int pos) {
+        int state = heap[pos];
+        double key = keys[state];
+        int half = heap.length >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < heap.length && keys[heap[right]] > keys[heap[child]]) {
+                child = right;
+            }
+            if (key >= keys[heap[child]]) {
+                break;
+            }
+            move(heap[child], pos);
+            pos = child;
+        }
+        move(state, pos);
+    }
+
+    /**
+     * @param state State to place
+     * @param pos Heap position to place it at
+     */
+    private void move(final int state, final int pos) {
+        heap[pos] = state;
+        position[state] = pos;
+    }
+}
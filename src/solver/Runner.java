@@ -1,9 +1,24 @@
 package solver;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import problem.BatchPolicy;
+import problem.BatchSimulator;
+import problem.HistoryMode;
+import problem.LogLevel;
+import problem.OutputFormat;
 import problem.ProblemSpec;
+import problem.RandomSource;
+import problem.RandomSourceType;
 import problem.Simulator;
 
 public class Runner {
@@ -24,47 +39,253 @@ public class Runner {
 	
 	/** Whether to re-create the solver for every simulation. */
 	public static boolean RECREATE_SOLVER = true;
+	
+	/** The number of threads running simulations; 1 runs them one after another. */
+	private static int numThreads = 1;
+	/** The master seed from which the random stream of every simulation is derived. */
+	private static Long masterSeed = null;
+	/** The kind of random stream every simulation uses. */
+	private static RandomSourceType rngType = RandomSourceType.SPLITTABLE;
+	/** The most detailed level of simulator output when running on one thread. */
+	private static LogLevel logLevel = LogLevel.DEBUG;
+	/** The format of the output file. */
+	private static OutputFormat outputFormat = OutputFormat.TEXT;
+	/** Number of weeks after which the output is written out; 0 writes when the buffer is full. */
+	private static int flushInterval = 0;
+	/** Number of simulations advanced in lockstep by a batch simulator; 0 runs them one by one. */
+	private static int batchSize = 0;
+	/** The file the solver metrics are written to at the end, CSV or JSON by extension, or null. */
+	private static String metricsPath = null;
 
 	public static void main(String[] args) throws Exception {
+		long startTime = System.nanoTime();
+		long firstOrderTime = 0;
 		parseCommandLine(args);
+		MySolver.METRICS.registerMBean();
 	            
 		Class<?> clazz = Class.forName(solverName);
 		Constructor<?> ctor = clazz.getConstructor(ProblemSpec.class);
 		
 		ProblemSpec spec = new ProblemSpec(inputPath);
-		double totalProfit = 0;
+		RandomSource[] streams = episodeStreams();
+		ProfitStatistics stats = new ProfitStatistics();
 		
-		Simulator simulator = new Simulator(spec);
-		OrderingAgent solver = null;
-		if (!RECREATE_SOLVER) {
-			solver = (OrderingAgent)ctor.newInstance(spec);
-			solver.doOfflineComputation();
-		}
-		for (int simNo = 0; simNo < numSimulations; simNo++) {
-	        
-			System.out.printf("Run #%d\n", simNo+1);
-			System.out.println("-----------------------------------------------------------");
-			
-			simulator.reset();
-			if (RECREATE_SOLVER) {
+		if (batchSize > 0) {
+			double[] profits = runBatched(ctor, spec, streams);
+			for (double profit : profits) {
+				stats.add(profit);
+			}
+		} else if (numThreads > 1) {
+			double[] profits = runParallel(ctor, spec, streams);
+			for (double profit : profits) {
+				stats.add(profit);
+			}
+		} else {
+			Simulator simulator = new Simulator(spec, null, logLevel);
+			simulator.setHistoryMode(HistoryMode.OFF);
+			OrderingAgent solver = null;
+			if (!RECREATE_SOLVER) {
 				solver = (OrderingAgent)ctor.newInstance(spec);
 				solver.doOfflineComputation();
 			}
-			
-			for (int i = 0; i < spec.getNumWeeks(); i++) {
-				List<Integer> shopping = solver.generateStockOrder(
-						simulator.getStockInventory(), spec.getNumWeeks() - (i+1));
-				simulator.simulateStep(shopping);
+			// flush in any case, so the log of the weeks before a failure is not lost
+			try {
+				for (int simNo = 0; simNo < numSimulations; simNo++) {
+		        
+					if (simulator.isLoggable(LogLevel.INFO)) {
+						simulator.log(LogLevel.INFO, String.format("Run #%d", simNo+1));
+						simulator.log(LogLevel.INFO, "-----------------------------------------------------------");
+					}
+				
+					simulator.setRandom(streams[simNo]);
+					simulator.reset();
+					if (simNo == numSimulations - 1) {
+						simulator.setOutputWriter(outputFormat.open(outputPath, flushInterval));
+					}
+					if (RECREATE_SOLVER) {
+						solver = (OrderingAgent)ctor.newInstance(spec);
+						solver.doOfflineComputation();
+					}
+				
+					try {
+						for (int i = 0; i < spec.getNumWeeks(); i++) {
+							List<Integer> shopping = solver.generateStockOrder(
+									simulator.getStockInventory(), spec.getNumWeeks() - (i+1));
+							if (firstOrderTime == 0) {
+								firstOrderTime = System.nanoTime();
+							}
+							simulator.simulateStep(shopping);
+						}
+					} finally {
+						simulator.closeOutput();
+					}
+	
+					stats.add(simulator.getTotalProfit());
+					simulator.log(LogLevel.INFO, "-----------------------------------------------------------");
+				}
+			} finally {
+				simulator.flushLog();
 			}
-
-			totalProfit += simulator.getTotalProfit();
-			System.out.println("-----------------------------------------------------------");
 		}
-		
-		simulator.saveOutput(outputPath);
-		System.out.printf("Summary statistics from %d runs:\n", numSimulations);
+		System.out.printf("Summary statistics from %d runs (master seed %d, %d threads):\n",
+				numSimulations, masterSeed, numThreads);
 		System.out.println();
-		System.out.printf("Overall profit: %f\n", totalProfit);
+		System.out.printf("Overall profit: %f\n", stats.getTotal());
+		System.out.printf("Mean profit: %f\n", stats.getMean());
+		System.out.printf("Variance: %f\n", stats.getVariance());
+		System.out.printf("95%% confidence interval: [%f, %f]\n",
+				stats.getMean() - stats.getHalfWidth95(), stats.getMean() + stats.getHalfWidth95());
+		if (firstOrderTime != 0) {
+			System.out.printf("Startup to first order: %.3f ms (solver parallelism %d)\n",
+					(firstOrderTime - startTime) / 1e6, MySolver.PARALLELISM);
+		}
+		PolicyCache cache = MySolver.POLICY_CACHE;
+		if (cache.getHits() + cache.getMisses() > 0) {
+			System.out.printf("Policy cache: %d hits, %d misses, %d warm starts\n",
+					cache.getHits(), cache.getMisses(), cache.getWarmStarts());
+		}
+		if (metricsPath != null) {
+			SolverMetrics metrics = MySolver.METRICS;
+			metrics.write(metricsPath);
+			System.out.printf("Solver metrics: %d item solves, %d sweeps, %.3f ms, slowest item %d\n",
+					metrics.getItemCount(), metrics.getTotalSweeps(), metrics.getTotalWallMillis(),
+					metrics.getSlowestItemId());
+		}
+	}
+	
+	/**
+	 * Derives an independent random stream for every simulation from the master seed.
+	 * The streams only depend on the seed and the simulation number, so results are
+	 * reproducible regardless of the number of threads.
+	 * @return Random stream of every simulation
+	 */
+	private static RandomSource[] episodeStreams() {
+		long[] seeds = episodeSeeds(masterSeed, numSimulations);
+		RandomSource[] streams = new RandomSource[numSimulations];
+		for (int i = 0; i < numSimulations; i++) {
+			streams[i] = rngType.create(seeds[i]);
+		}
+		return streams;
+	}
+	
+	/**
+	 * @param seed The master seed
+	 * @param count Number of simulations
+	 * @return Seed of every simulation, drawn in order from a stream seeded with the master seed
+	 */
+	public static long[] episodeSeeds(long seed, int count) {
+		SplittableRandom master = new SplittableRandom(seed);
+		long[] seeds = new long[count];
+		for (int i = 0; i < count; i++) {
+			seeds[i] = master.nextLong();
+		}
+		return seeds;
+	}
+	
+	/**
+	 * Runs the simulations on numThreads threads. Every thread has its own simulator and
+	 * solver, and takes the next simulation number from a shared counter. The last run
+	 * is streamed to the output file.
+	 * @param ctor Constructor of the solver
+	 * @param spec The problem spec
+	 * @param streams Random stream of every simulation
+	 * @return Total discounted profit of every simulation
+	 */
+	private static double[] runParallel(final Constructor<?> ctor, final ProblemSpec spec,
+			final RandomSource[] streams) throws Exception {
+		final double[] profits = new double[numSimulations];
+		final AtomicInteger nextRun = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int t = 0; t < numThreads; t++) {
+				workers.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						Simulator simulator = new Simulator(spec, null, false);
+						simulator.setHistoryMode(HistoryMode.OFF);
+						OrderingAgent solver = (OrderingAgent)ctor.newInstance(spec);
+						solver.doOfflineComputation();
+						for (int simNo = nextRun.getAndIncrement(); simNo < numSimulations;
+								simNo = nextRun.getAndIncrement()) {
+							simulator.setRandom(streams[simNo]);
+							simulator.reset();
+							if (simNo == numSimulations - 1) {
+								simulator.setOutputWriter(outputFormat.open(outputPath, flushInterval));
+							}
+							try {
+								for (int i = 0; i < spec.getNumWeeks(); i++) {
+									simulator.simulateStep(solver.generateStockOrder(
+											simulator.getStockInventory(), spec.getNumWeeks() - (i+1)));
+								}
+							} finally {
+								simulator.closeOutput();
+							}
+							profits[simNo] = simulator.getTotalProfit();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} finally {
+			pool.shutdownNow();
+		}
+		return profits;
+	}
+	
+	/**
+	 * Runs the simulations in groups of batchSize episodes on a {@link BatchSimulator} with the
+	 * batch form of the policy of a single {@link MySolver}. Every episode uses its own stream
+	 * and MySolver orders through the same tables in both forms, so the profits are the same as
+	 * those of the simulations run one by one. The last run is simulated on its own and streamed
+	 * to the output file.
+	 * @param ctor Constructor of the solver
+	 * @param spec The problem spec
+	 * @param streams Random stream of every simulation
+	 * @return Total discounted profit of every simulation
+	 */
+	private static double[] runBatched(final Constructor<?> ctor, final ProblemSpec spec,
+			final RandomSource[] streams) throws Exception {
+		OrderingAgent solver = (OrderingAgent)ctor.newInstance(spec);
+		if (!(solver instanceof MySolver)) {
+			throw new IllegalArgumentException("Batch simulation requires " + DEFAULT_SOLVER);
+		}
+		solver.doOfflineComputation();
+		BatchPolicy policy = ((MySolver)solver).getBatchPolicy();
+		double[] profits = new double[numSimulations];
+		int last = numSimulations - 1;
+		for (int first = 0; first < last; first += batchSize) {
+			int count = Math.min(batchSize, last - first);
+			RandomSource[] group = new RandomSource[count];
+			System.arraycopy(streams, first, group, 0, count);
+			BatchSimulator batch = new BatchSimulator(spec, group);
+			batch.run(policy);
+			for (int e = 0; e < count; e++) {
+				profits[first + e] = batch.getTotalProfit(e);
+			}
+		}
+		
+		Simulator simulator = new Simulator(spec, streams[last], false);
+		simulator.setHistoryMode(HistoryMode.OFF);
+		simulator.setOutputWriter(outputFormat.open(outputPath, flushInterval));
+		try {
+			for (int i = 0; i < spec.getNumWeeks(); i++) {
+				simulator.simulateStep(solver.generateStockOrder(
+						simulator.getStockInventory(), spec.getNumWeeks() - (i+1)));
+			}
+		} finally {
+			simulator.closeOutput();
+		}
+		profits[last] = simulator.getTotalProfit();
+		return profits;
 	}
 	
 	/**
@@ -76,7 +297,27 @@ public class Runner {
 	public static void parseCommandLine(String args[]) {
 		for (int i = 0; i < args.length; i++) {
 			String arg = args[i].trim();
-			if (inputPath == null) {
+			if (arg.equals("-threads") && i + 1 < args.length) {
+				numThreads = Integer.valueOf(args[++i].trim());
+			} else if (arg.equals("-seed") && i + 1 < args.length) {
+				masterSeed = Long.valueOf(args[++i].trim());
+			} else if (arg.equals("-quiet")) {
+				logLevel = LogLevel.WARNING;
+			} else if (arg.equals("-log") && i + 1 < args.length) {
+				logLevel = LogLevel.valueOf(args[++i].trim().toUpperCase());
+			} else if (arg.equals("-format") && i + 1 < args.length) {
+				outputFormat = OutputFormat.valueOf(args[++i].trim().toUpperCase());
+			} else if (arg.equals("-flush") && i + 1 < args.length) {
+				flushInterval = Integer.valueOf(args[++i].trim());
+			} else if (arg.equals("-cache") && i + 1 < args.length) {
+				MySolver.POLICY_CACHE.setDirectory(args[++i].trim());
+			} else if (arg.equals("-metrics") && i + 1 < args.length) {
+				metricsPath = args[++i].trim();
+			} else if (arg.equals("-batch") && i + 1 < args.length) {
+				batchSize = Integer.valueOf(args[++i].trim());
+			} else if (arg.equals("-rng") && i + 1 < args.length) {
+				rngType = RandomSourceType.valueOf(args[++i].trim().toUpperCase());
+			} else if (inputPath == null) {
 				inputPath = arg;
 			} else if (outputPath == null) {
 				outputPath = arg;
@@ -98,6 +339,12 @@ public class Runner {
 		if (numSimulations == 0) {
 			numSimulations = DEFAULT_NUM_SIMULATIONS;
 		}
+		if (batchSize > 0 && numThreads > 1) {
+			throw new IllegalArgumentException("-batch runs on a single thread; drop -threads.");
+		}
+		if (masterSeed == null) {
+			masterSeed = System.nanoTime();
+		}
 	}
 
 }
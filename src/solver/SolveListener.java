@@ -0,0 +1,16 @@
+package solver;
+
+/**
+ * Receives the progress of a solve, e.g. to record how the residual decays.
+ * Called on the solving thread, or on one of the solving threads for parallel schedules,
+ * once per completed sweep.
+ */
+public interface SolveListener {
+    /**
+     * @param sweep Number of sweeps completed so far in the solve
+     * @param residual Largest change in the utility of any state in the sweep, or NaN for
+     *        sweeps which do not compute it, such as policy evaluation sweeps; for prioritized
+     *        sweeping a sweep is a block of as many single state updates as there are states
+     */
+    void sweepCompleted(long sweep, double residual);
+}
@@ -0,0 +1,57 @@
+package solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import problem.ProblemSpec;
+
+/**
+ * Compares offline computation time and memory of the per item type processes
+ * solved by {@link MySolver} against the exact {@link JointMDP}.
+ */
+public class SolverComparison {
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			throw new IllegalArgumentException("Input path not given.");
+		}
+		ProblemSpec spec = new ProblemSpec(args[0]);
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		// Let garbage from loading the problem spec be collected first
+		usedHeap(memory);
+		long heapBefore = usedHeap(memory);
+		long start = System.nanoTime();
+		MySolver decomposed = new MySolver(spec);
+		decomposed.doOfflineComputation();
+		long decomposedTime = System.nanoTime() - start;
+		long decomposedHeap = usedHeap(memory) - heapBefore;
+
+		heapBefore = usedHeap(memory);
+		start = System.nanoTime();
+		JointMDP joint = new JointMDP(spec.getStore().getCapacity(), spec.getStore().getMaxPurchase(),
+				spec.getStore().getMaxReturns(), spec.getPrices(), spec.getDiscountFactor(),
+				spec.getProbabilities());
+		joint.solve(1);
+		long jointTime = System.nanoTime() - start;
+		long jointHeap = usedHeap(memory) - heapBefore;
+
+		System.out.printf("Store: %s, %d item types\n", spec.getStore().getName(), spec.getStore().getMaxTypes());
+		System.out.printf("Decomposed: %.3f ms, retained heap %d bytes\n", decomposedTime / 1e6, decomposedHeap);
+		System.out.printf("Joint:      %.3f ms, retained heap %d bytes, %d states, %d sweeps, arrays %d bytes\n",
+				jointTime / 1e6, jointHeap, joint.getStateCount(), joint.getSweepCount(), joint.getFootprintBytes());
+		// Using both solutions here also keeps them reachable until their heap usage is measured
+		System.out.println("Decomposed first order: "
+				+ decomposed.generateStockOrder(spec.getInitialStock(), spec.getNumWeeks() - 1));
+		System.out.println("Joint first order:      " + joint.getOrder(spec.getInitialStock()));
+	}
+
+	/**
+	 * @param memory Memory bean of the running virtual machine
+	 * @return Heap in use after a garbage collection
+	 */
+	private static long usedHeap(MemoryMXBean memory) {
+		System.gc();
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+}
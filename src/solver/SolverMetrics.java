@@ -0,0 +1,243 @@
+package solver;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the {@link ItemMetrics} of every item type solved offline, so it can be seen which
+ * item types drive the offline latency. Readable over JMX once registered, and written to a
+ * CSV or JSON file at the end of a run. Thread safe.
+ */
+public class SolverMetrics implements SolverMetricsMXBean {
+    /** Name the metrics are registered under in the platform MBean server. */
+    public static final String OBJECT_NAME = "mdpforstores:type=SolverMetrics";
+
+    /** Metrics of the item types solved since the last reset, in order of completion. */
+    private final List<ItemMetrics> items = new ArrayList<ItemMetrics>();
+
+    /**
+     * Starts recording the solve of an item type on the current thread.
+     * @param itemId Item type id, or -1 for the joint process
+     * @param price Price of the item type
+     * @param storage Storage space reserved for the item type
+     * @param solver Name of the algorithm
+     * @return Metrics to pass to the solver as its listener, then to {@link #finish}
+     */
+    public ItemMetrics start(final int itemId, final double price, final int storage, final String solver) {
+        return new ItemMetrics(itemId, price, storage, solver);
+    }
+
+    /**
+     * Finishes recording a solve on the thread which started it.
+     * @param item Metrics returned by {@link #start}
+     * @param sweeps Number of sweeps of the solve
+     * @param backups Number of state backups of the solve
+     * @param stopReason Criterion which ended the solve, or null if unknown
+     * @param lossBound Certified bound on the policy loss, or NaN
+     */
+    public void finish(final ItemMetrics item, final long sweeps, final long backups,
+            final StopReason stopReason, final double lossBound) {
+        item.finish(sweeps, backups, stopReason, lossBound);
+        synchronized (this) {
+            items.add(item);
+        }
+    }
+
+    @Override
+    public synchronized List<ItemMetrics> getItems() {
+        return new ArrayList<ItemMetrics>(items);
+    }
+
+    @Override
+    public synchronized int getItemCount() {
+        return items.size();
+    }
+
+    @Override
+    public synchronized long getTotalSweeps() {
+        long total = 0;
+        for (ItemMetrics item : items) {
+            total += item.getSweeps();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long getTotalBackups() {
+        long total = 0;
+        for (ItemMetrics item : items) {
+            total += item.getBackups();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized double getTotalWallMillis() {
+        double total = 0;
+        for (ItemMetrics item : items) {
+            total += item.getWallMillis();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized long getTotalAllocatedBytes() {
+        long total = 0;
+        for (ItemMetrics item : items) {
+            if (item.getAllocatedBytes() < 0) {
+                return -1;
+            }
+            total += item.getAllocatedBytes();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized int getSlowestItemId() {
+        ItemMetrics slowest = null;
+        for (ItemMetrics item : items) {
+            if (slowest == null || item.getWallMillis() > slowest.getWallMillis()) {
+                slowest = item;
+            }
+        }
+        return slowest == null ? -1 : slowest.getItemId();
+    }
+
+    @Override
+    public synchronized void reset() {
+        items.clear();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under {@link #OBJECT_NAME}.
+     * @return False if other metrics are already registered under the name
+     */
+    public boolean registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register solver metrics", e);
+        }
+    }
+
+    /**
+     * Writes the metrics of every item type, as JSON if the file name ends with .json,
+     * otherwise as CSV with the residuals of a solve separated by semicolons.
+     * @param filename The file path to save to
+     * @throws IOException
+     */
+    public void write(final String filename) throws IOException {
+        List<ItemMetrics> snapshot = getItems();
+        String ls = System.getProperty("line.separator");
+        Writer output = new BufferedWriter(new FileWriter(filename));
+        try {
+            if (filename.toLowerCase().endsWith(".json")) {
+                writeJson(output, snapshot, ls);
+            } else {
+                writeCsv(output, snapshot, ls);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * @param output The writer
+     * @param snapshot Metrics to write
+     * @param ls The line separator
+     * @throws IOException
+     */
+    private static void writeCsv(final Writer output, final List<ItemMetrics> snapshot, final String ls)
+            throws IOException {
+        output.write("item,price,storage,solver,sweeps,backups,wallMillis,allocatedBytes,finalResidual,stopReason,lossBound,residuals" + ls);
+        for (ItemMetrics item : snapshot) {
+            output.write(item.getItemId() + "," + item.getPrice() + "," + item.getStorage() + ","
+                    + item.getSolver() + "," + item.getSweeps() + "," + item.getBackups() + ","
+                    + item.getWallMillis() + "," + item.getAllocatedBytes() + "," + item.getFinalResidual() + ","
+                    + (item.getStopReason() == null ? "" : item.getStopReason()) + "," + item.getLossBound() + ",");
+            double[] residuals = item.getResidualHistory();
+            for (int i = 0; i < residuals.length; i++) {
+                if (i > 0) {
+                    output.write(';');
+                }
+                output.write(String.valueOf(residuals[i]));
+            }
+            output.write(ls);
+        }
+    }
+
+    /**
+     * @param output The writer
+     * @param snapshot Metrics to write
+     * @param ls The line separator
+     * @throws IOException
+     */
+    private static void writeJson(final Writer output, final List<ItemMetrics> snapshot, final String ls)
+            throws IOException {
+        output.write("[" + ls);
+        for (int k = 0; k < snapshot.size(); k++) {
+            ItemMetrics item = snapshot.get(k);
+            output.write("  {\"item\": " + item.getItemId() + ", \"price\": " + jsonNumber(item.getPrice())
+                    + ", \"storage\": " + item.getStorage() + ", \"solver\": \"" + jsonEscape(item.getSolver())
+                    + "\", \"sweeps\": " + item.getSweeps() + ", \"backups\": " + item.getBackups()
+                    + ", \"wallMillis\": " + jsonNumber(item.getWallMillis())
+                    + ", \"allocatedBytes\": " + item.getAllocatedBytes()
+                    + ", \"finalResidual\": " + jsonNumber(item.getFinalResidual())
+                    + ", \"stopReason\": " + (item.getStopReason() == null ? "null" : "\"" + item.getStopReason() + "\"")
+                    + ", \"lossBound\": " + jsonNumber(item.getLossBound()) + "," + ls
+                    + "   \"residuals\": [");
+            double[] residuals = item.getResidualHistory();
+            for (int i = 0; i < residuals.length; i++) {
+                if (i > 0) {
+                    output.write(", ");
+                }
+                output.write(jsonNumber(residuals[i]));
+            }
+            output.write("]}" + (k + 1 < snapshot.size() ? "," : "") + ls);
+        }
+        output.write("]" + ls);
+    }
+
+    /**
+     * @param value A number
+     * @return The number in JSON, which has no NaN or infinities, so they become null
+     */
+    private static String jsonNumber(final double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+
+    /**
+     * @param text A string
+     * @return The string with quotes and backslashes escaped
+     */
+    private static String jsonEscape(final String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, or -1 if the JVM does not count them
+     */
+    static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled()) {
+                return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,36 @@
+package solver;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link SolverMetrics}, registered as {@link SolverMetrics#OBJECT_NAME}.
+ */
+public interface SolverMetricsMXBean {
+    /**
+     * @return Metrics of every item type solved since the last reset, in order of completion
+     */
+    List<ItemMetrics> getItems();
+
+    int getItemCount();
+
+    long getTotalSweeps();
+
+    long getTotalBackups();
+
+    double getTotalWallMillis();
+
+    /**
+     * @return Total bytes allocated by the solving threads, or -1 if the JVM does not count them
+     */
+    long getTotalAllocatedBytes();
+
+    /**
+     * @return Id of the item type that took longest to solve, or -1 if none was solved
+     */
+    int getSlowestItemId();
+
+    /**
+     * Forgets all recorded metrics.
+     */
+    void reset();
+}
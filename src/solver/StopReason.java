@@ -0,0 +1,23 @@
+package solver;
+
+/**
+ * Criterion which ended a solve: a run of the dense value iteration engine, policy iteration
+ * or modified policy iteration.
+ */
+public enum StopReason {
+    /** The largest change in utility of any state fell below epsilon * (1 - gamma) / gamma. */
+    RESIDUAL,
+    /** The certified bound on the loss of the greedy policy fell below epsilon. */
+    SPAN,
+    /**
+     * The greedy action of every state stayed the same for the required number of sweeps, or
+     * for policy iteration, the improvement step changed no action.
+     */
+    POLICY_STABLE,
+    /** The sweep budget ran out. */
+    SWEEP_LIMIT,
+    /** The time budget ran out. */
+    TIME_LIMIT,
+    /** The policy came from the policy cache, so nothing was solved. */
+    CACHED
+}
@@ -0,0 +1,91 @@
+package solver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When the dense value iteration engine stops besides the residual test, which always applies.
+ * The span test needs the change in utility of every state of a sweep against the previous
+ * sweep, so only the Jacobi schedules apply it. The policy stability test applies to the Jacobi
+ * and Gauss-Seidel schedules, the budgets to every schedule.
+ */
+public class StoppingRule {
+    /** Stops on the residual test alone, with no budget. */
+    public static final StoppingRule RESIDUAL_ONLY = new StoppingRule(false, 0, 0, 0);
+
+    /** Whether to stop once the loss bound of the greedy policy is below epsilon. */
+    private final boolean span;
+    /** Number of sweeps without a change in the greedy policy after which to stop, 0 for never. */
+    private final int stableSweeps;
+    /** Number of sweeps after which to stop, 0 for no limit. */
+    private final long maxSweeps;
+    /** Time after which to stop in milliseconds, 0 for no limit. */
+    private final long maxMillis;
+
+    /**
+     * @param spanTest Whether to stop once the loss bound of the greedy policy is below epsilon
+     * @param stable Number of sweeps without a change in the greedy policy after which to stop,
+     *        0 for never
+     * @param sweepLimit Number of sweeps after which to stop, 0 for no limit
+     * @param millisLimit Time after which to stop in milliseconds, 0 for no limit
+     */
+    public StoppingRule(final boolean spanTest, final int stable, final long sweepLimit, final long millisLimit) {
+        if (stable < 0 || sweepLimit < 0 || millisLimit < 0) {
+            throw new IllegalArgumentException("Stopping rule limits must not be negative");
+        }
+        span = spanTest;
+        stableSweeps = stable;
+        maxSweeps = sweepLimit;
+        maxMillis = millisLimit;
+    }
+
+    public boolean isSpan() {
+        return span;
+    }
+
+    public int getStableSweeps() {
+        return stableSweeps;
+    }
+
+    public long getMaxSweeps() {
+        return maxSweeps;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * @param sweeps Number of sweeps done
+     * @param startNanos Value of System.nanoTime() when the solve started
+     * @return The budget which ran out, or null
+     */
+    StopReason budgetExhausted(final long sweeps, final long startNanos) {
+        if (maxSweeps > 0 && sweeps >= maxSweeps) {
+            return StopReason.SWEEP_LIMIT;
+        }
+        if (maxMillis > 0 && System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(maxMillis)) {
+            return StopReason.TIME_LIMIT;
+        }
+        return null;
+    }
+
+    /**
+     * @return Empty for the residual test alone, otherwise the tests and limits in use
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (span) {
+            sb.append("/span");
+        }
+        if (stableSweeps > 0) {
+            sb.append("/stable:").append(stableSweeps);
+        }
+        if (maxSweeps > 0) {
+            sb.append("/sweeps:").append(maxSweeps);
+        }
+        if (maxMillis > 0) {
+            sb.append("/ms:").append(maxMillis);
+        }
+        return sb.toString();
+    }
+}
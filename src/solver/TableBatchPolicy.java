@@ -0,0 +1,107 @@
+package solver;
+
+import java.util.List;
+import java.util.Map;
+
+import problem.BatchPolicy;
+
+/**
+ * Decomposed policy of {@link MySolver}: the stationary orders of every item type are flattened
+ * into int tables indexed by stock, and the orders are pre-cut to the maximum order size.
+ * {@link MySolver#generateStockOrder(List, int)} orders through the same tables as a single
+ * episode, so the single and the batch form of the policy always agree.
+ */
+class TableBatchPolicy implements BatchPolicy {
+    /** Number of item types. */
+    private int numTypes;
+    /** Max number of items the store can order in a week. */
+    private int maxPurchase;
+    /** Item types indexed by id. */
+    private ItemType[] typesById;
+    /** Ids of the item types in order of decreasing price. */
+    private int[] sortedIds;
+    /** Stationary order of each item type by stock level, or null for finite horizon policies. */
+    private int[][] tables;
+
+    /**
+     * @param types Solved item types in order of decreasing price
+     * @param byId The same item types indexed by id
+     * @param orderSize Max number of items the store can order in a week
+     * @param finiteHorizon Whether the item types hold finite horizon policies
+     */
+    TableBatchPolicy(final List<ItemType> types, final ItemType[] byId, final int orderSize,
+            final boolean finiteHorizon) {
+        numTypes = byId.length;
+        maxPurchase = orderSize;
+        typesById = byId;
+        sortedIds = new int[numTypes];
+        for (int idx = 0; idx < numTypes; idx++) {
+            sortedIds[idx] = types.get(idx).getId();
+        }
+        if (!finiteHorizon) {
+            tables = new int[numTypes][];
+            for (int id = 0; id < numTypes; id++) {
+                tables[id] = flatten(byId[id]);
+            }
+        }
+    }
+
+    /**
+     * The policy may have gaps, since stock levels without any admissible action are left out
+     * of it. The table covers every level up to the largest one in the policy and a gap orders
+     * nothing, while stock above the table carries over the order of the previous item type.
+     * @param t Solved item type
+     * @return Order of the item type by stock level, with the storage correction applied
+     */
+    private static int[] flatten(final ItemType t) {
+        Map<Integer, Integer> policy = t.getPolicy();
+        int maxLevel = -1;
+        for (int level : policy.keySet()) {
+            maxLevel = Math.max(maxLevel, level);
+        }
+        int[] table = new int[maxLevel + 1];
+        for (int curr = 0; curr < table.length; curr++) {
+            Integer action = policy.get(curr);
+            if (action == null) {
+                continue;
+            }
+            int ordered = action;
+            if (curr + ordered > t.getStorage()) {
+                ordered -= t.getStorage() - (curr + ordered);
+            }
+            table[curr] = ordered;
+        }
+        return table;
+    }
+
+    @Override
+    public void generateStockOrders(final int[] inventory, final int numWeeksLeft, final int[] orders) {
+        for (int base = 0; base < inventory.length; base += numTypes) {
+            int ordered = 0;
+            int totalOrdered = 0;
+            for (int itemId = 0; itemId < numTypes; itemId++) {
+                int curr = inventory[base + itemId];
+                if (tables == null) {
+                    ordered = typesById[itemId].getHorizonOrder(numWeeksLeft, curr);
+                } else if (curr < tables[itemId].length) {
+                    ordered = tables[itemId][curr];
+                }
+                orders[base + itemId] = ordered;
+                totalOrdered += ordered;
+            }
+            int idx = numTypes - 1;
+            // pre-cut to not exceed maximum order size
+            while (totalOrdered > maxPurchase) {
+                int id = sortedIds[idx];
+                if (orders[base + id] > 0) {
+                    orders[base + id]--;
+                    totalOrdered--;
+                }
+                idx--;
+                if (idx < 0) {
+                    idx = numTypes - 1;
+                }
+            }
+        }
+    }
+}
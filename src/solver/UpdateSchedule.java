@@ -0,0 +1,15 @@
+package solver;
+
+/**
+ * Order in which the dense value iteration engine updates the utilities of states.
+ */
+public enum UpdateSchedule {
+    /** Every sweep computes new utilities from the utilities of the previous sweep. */
+    JACOBI,
+    /** Utilities are updated in place, so later states in a sweep see earlier updates. */
+    GAUSS_SEIDEL,
+    /** States are updated one at a time in order of decreasing Bellman residual. */
+    PRIORITIZED,
+    /** Jacobi sweeps with the state space split into blocks which are backed up on separate threads. */
+    PARALLEL_JACOBI
+}
@@ -0,0 +1,62 @@
+package solver;
+
+import java.util.Map;
+
+/**
+ * Solves the process with the dense value iteration engine.
+ */
+public class ValueIterationSolver implements MDPSolver {
+    /** The maximum error allowed in the utility of any state. */
+    private double epsilon;
+    /** Order in which utilities of states are updated. */
+    private UpdateSchedule schedule;
+    /** Tests and budgets ending the iteration besides the residual test. */
+    private StoppingRule stoppingRule;
+    /** Whether to drop provably suboptimal actions, see {@link MDP#setActionElimination(boolean)}. */
+    private boolean actionElimination;
+    
+    /**
+     * @param maxError The maximum error allowed in the utility of any state
+     * @param updateSchedule Order in which utilities of states are updated
+     */
+    public ValueIterationSolver(final double maxError, final UpdateSchedule updateSchedule) {
+        this(maxError, updateSchedule, StoppingRule.RESIDUAL_ONLY);
+    }
+    
+    /**
+     * @param maxError The maximum error allowed in the utility of any state
+     * @param updateSchedule Order in which utilities of states are updated
+     * @param rule Tests and budgets ending the iteration besides the residual test
+     */
+    public ValueIterationSolver(final double maxError, final UpdateSchedule updateSchedule,
+            final StoppingRule rule) {
+        this(maxError, updateSchedule, rule, false);
+    }
+    
+    /**
+     * @param maxError The maximum error allowed in the utility of any state
+     * @param updateSchedule Order in which utilities of states are updated
+     * @param rule Tests and budgets ending the iteration besides the residual test
+     * @param eliminate Whether the Jacobi schedule drops provably suboptimal actions
+     */
+    public ValueIterationSolver(final double maxError, final UpdateSchedule updateSchedule,
+            final StoppingRule rule, final boolean eliminate) {
+        epsilon = maxError;
+        schedule = updateSchedule;
+        stoppingRule = rule;
+        actionElimination = eliminate;
+    }
+    
+    @Override
+    public Map<Integer, Integer> solve(final MDP mdp) {
+        mdp.setSchedule(schedule);
+        mdp.setStoppingRule(stoppingRule);
+        mdp.setActionElimination(actionElimination);
+        return mdp.denseValueIteration(epsilon);
+    }
+    
+    public String toString() {
+        return "vi-" + schedule.name().toLowerCase() + "(" + epsilon + stoppingRule
+                + (actionElimination && schedule == UpdateSchedule.JACOBI ? "/elim" : "") + ")";
+    }
+}